@@ -0,0 +1,286 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Circuit breaker for one payment provider, lock-free (atomics only, no lock on the call path).
+
+CLOSED: calls go through; the outcome of each is written into a sliding window of the last
+`windowSize` calls (a ring of slots, each counting as ok / slow / failed). Once the window
+holds `minimumCalls` outcomes and either the failure rate or the slow-call rate (slower than
+`slowCallDuration`) reaches its threshold, the breaker trips:
+
+OPEN: tryAcquire() says no without calling the provider, for `openDuration`. Callers fail
+fast (or fail over, see FailoverPaymentRouter) instead of all waiting on a sick provider.
+
+HALF_OPEN: after that, `halfOpenCalls` trial calls are let through. If all of them are fast
+and succeed the breaker closes with an empty window; one bad trial opens it again.
+
+Every state change starts a new Generation, and tryAcquire() hands out the current one as the
+call's permit. An outcome reported with a permit of an older generation is ignored: a slow
+call let through while CLOSED that finishes after the switch to HALF_OPEN is not a trial, and
+must not close (or reopen) the breaker in place of the real trial calls.
+
+Usage:
+    CircuitBreaker.Generation permit = breaker.tryAcquire();
+    if (permit != null) {
+        long start = System.nanoTime();
+        try { call(); breaker.onSuccess(permit, System.nanoTime() - start); }
+        catch (RuntimeException e) { breaker.onFailure(permit, System.nanoTime() - start); throw e; }
+    }
+
+A call that was admitted but never reached the provider gives its permit back with release().
+*/
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // One stretch of time in one state; replaced as a whole on every transition.
+    static final class Generation {
+        final State state;
+        final long openUntil;                                              // OPEN
+        private final AtomicInteger trialPermits = new AtomicInteger();   // HALF_OPEN
+        private final AtomicInteger trialSuccesses = new AtomicInteger(); // HALF_OPEN
+
+        private Generation(State state, long openUntil, int trialPermits) {
+            this.state = state;
+            this.openUntil = openUntil;
+            this.trialPermits.set(trialPermits);
+        }
+    }
+
+    private static final int RECORDED = 1;
+    private static final int SLOW = 2;
+    private static final int FAILED = 4;
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;   // percent
+    private final int slowCallRateThreshold;  // percent
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final AtomicReference<Generation> generation = new AtomicReference<>(new Generation(State.CLOSED, 0, 0));
+    private final AtomicIntegerArray window;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final AtomicInteger slow = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder trips = new LongAdder();
+
+    private CircuitBreaker(Builder builder, String name) {
+        this.name = name;
+        this.windowSize = builder.windowSize;
+        this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallNanos = builder.slowCallNanos;
+        this.openNanos = builder.openNanos;
+        this.halfOpenCalls = builder.halfOpenCalls;
+        this.window = new AtomicIntegerArray(windowSize);
+    }
+
+    // May the caller call the provider now? Returns the permit to report the outcome with, or
+    // null while OPEN, or when the trial calls of HALF_OPEN are taken.
+    public Generation tryAcquire() {
+        Generation current = generation.get();
+        if (current.state == State.CLOSED) {
+            return current;
+        }
+        if (current.state == State.OPEN) {
+            if (System.nanoTime() - current.openUntil < 0) {
+                rejected.increment();
+                return null;
+            }
+            generation.compareAndSet(current, new Generation(State.HALF_OPEN, 0, halfOpenCalls));
+            current = generation.get();
+            if (current.state != State.HALF_OPEN) {
+                rejected.increment();
+                return null;
+            }
+        }
+        while (true) {
+            int permits = current.trialPermits.get();
+            if (permits <= 0) {
+                rejected.increment();
+                return null;
+            }
+            if (current.trialPermits.compareAndSet(permits, permits - 1)) {
+                return current;
+            }
+        }
+    }
+
+    public void onSuccess(Generation permit, long latencyNanos) {
+        record(permit, latencyNanos >= slowCallNanos ? RECORDED | SLOW : RECORDED);
+    }
+
+    public void onFailure(Generation permit, long latencyNanos) {
+        record(permit, latencyNanos >= slowCallNanos ? RECORDED | SLOW | FAILED : RECORDED | FAILED);
+    }
+
+    // The admitted call never reached the provider (or failed for a reason that says nothing
+    // about it): no outcome is recorded, and a HALF_OPEN trial permit goes back to the pool.
+    public void release(Generation permit) {
+        if (permit.state == State.HALF_OPEN && generation.get() == permit) {
+            permit.trialPermits.incrementAndGet();
+        }
+    }
+
+    public State getState() {
+        return generation.get().state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Calls refused without reaching the provider.
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    // How many times the breaker went to OPEN.
+    public long getTripCount() {
+        return trips.sum();
+    }
+
+    private void record(Generation permit, int outcome) {
+        if (generation.get() != permit) {
+            return; // admitted before the last state change; the window starts over after OPEN anyway
+        }
+        if (permit.state == State.HALF_OPEN) {
+            if ((outcome & (SLOW | FAILED)) != 0) {
+                trip(permit);
+            } else if (permit.trialSuccesses.incrementAndGet() >= halfOpenCalls) {
+                clearWindow();
+                generation.compareAndSet(permit, new Generation(State.CLOSED, 0, 0));
+            }
+            return;
+        }
+        int slot = (int) (cursor.getAndIncrement() % windowSize);
+        replace(window.getAndSet(slot, outcome), outcome);
+
+        int calls = recorded.get();
+        if (calls >= minimumCalls
+                && (failed.get() * 100 >= failureRateThreshold * calls || slow.get() * 100 >= slowCallRateThreshold * calls)) {
+            trip(permit);
+        }
+    }
+
+    private void trip(Generation from) {
+        if (generation.compareAndSet(from, new Generation(State.OPEN, System.nanoTime() + openNanos, 0))) {
+            trips.increment();
+            if (from.state == State.CLOSED) {
+                clearWindow();
+            }
+        }
+    }
+
+    private void clearWindow() {
+        for (int i = 0; i < windowSize; i++) {
+            replace(window.getAndSet(i, 0), 0);
+        }
+    }
+
+    // Keeps the counters equal to what the window holds when slot value `old` becomes `now`.
+    private void replace(int old, int now) {
+        if ((old & RECORDED) != (now & RECORDED)) {
+            recorded.addAndGet((now & RECORDED) - (old & RECORDED));
+        }
+        if ((old & SLOW) != (now & SLOW)) {
+            slow.addAndGet((now & SLOW) != 0 ? 1 : -1);
+        }
+        if ((old & FAILED) != (now & FAILED)) {
+            failed.addAndGet((now & FAILED) != 0 ? 1 : -1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + getState() + " (trips " + trips.sum() + ", rejected " + rejected.sum() + ")";
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Builder; one Builder can build the breakers of several providers.
+    public static class Builder {
+        private int windowSize = 100;
+        private int minimumCalls = 20;
+        private int failureRateThreshold = 50;
+        private int slowCallRateThreshold = 50;
+        private long slowCallNanos = TimeUnit.SECONDS.toNanos(1);
+        private long openNanos = TimeUnit.SECONDS.toNanos(5);
+        private int halfOpenCalls = 5;
+
+        private Builder() {
+        }
+
+        // Number of most recent calls the rates are computed over.
+        public Builder setWindowSize(int windowSize) {
+            if (windowSize <= 0) {
+                throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+            }
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        // No trip before the window holds this many calls.
+        public Builder setMinimumCalls(int minimumCalls) {
+            if (minimumCalls <= 0) {
+                throw new IllegalArgumentException("minimumCalls must be positive: " + minimumCalls);
+            }
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        public Builder setFailureRateThreshold(int percent) {
+            this.failureRateThreshold = checkPercent(percent);
+            return this;
+        }
+
+        public Builder setSlowCallRateThreshold(int percent) {
+            this.slowCallRateThreshold = checkPercent(percent);
+            return this;
+        }
+
+        // A call taking at least this long counts as slow.
+        public Builder setSlowCallDuration(long value, TimeUnit unit) {
+            this.slowCallNanos = unit.toNanos(value);
+            return this;
+        }
+
+        // How long the breaker stays OPEN before trying HALF_OPEN.
+        public Builder setOpenDuration(long value, TimeUnit unit) {
+            this.openNanos = unit.toNanos(value);
+            return this;
+        }
+
+        public Builder setHalfOpenCalls(int halfOpenCalls) {
+            if (halfOpenCalls <= 0) {
+                throw new IllegalArgumentException("halfOpenCalls must be positive: " + halfOpenCalls);
+            }
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        public CircuitBreaker build(String name) {
+            return new CircuitBreaker(this, name);
+        }
+
+        private static int checkPercent(int percent) {
+            if (percent <= 0 || percent > 100) {
+                throw new IllegalArgumentException("threshold must be in 1..100 percent: " + percent);
+            }
+            return percent;
+        }
+    }
+}
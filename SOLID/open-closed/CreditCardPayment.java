@@ -1,6 +1,11 @@
-class CreditCardPayment implements PaymentMethod {
+public class CreditCardPayment implements PaymentMethod {
     @Override
     public void pay(double amount) {
         System.out.println("Paid ₹" + amount + " using Credit Card.");
     }
+
+    @Override
+    public void pay(Money amount) {
+        System.out.println(amount.appendTo(Money.formatBuffer().append("Paid ")).append(" using Credit Card."));
+    }
 }
\ No newline at end of file
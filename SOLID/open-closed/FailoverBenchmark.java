@@ -0,0 +1,147 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Tail latency of UPI payments when the UPI provider degrades, with and without
+FailoverPaymentRouter (UPI -> credit card while UPI's circuit breaker is open).
+
+`threads` payers pay by UPI in a loop for 3 phases against simulated gateways:
+
+    healthy   UPI 10 ms ± 2, card 20 ms ± 5
+    incident  UPI 800 ms ± 200 and 30% of its calls fail
+    recovered UPI healthy again
+
+Reports latency percentiles per phase, failed payments and how many went to the fallback.
+
+    java FailoverBenchmark [threads] [healthySeconds] [incidentSeconds] [recoveredSeconds]
+*/
+class FailoverBenchmark {
+
+    static final class GatewayUpi extends UPIPayment {
+        final SimulatedGateway gateway = new SimulatedGateway("upi", 10, 2, TimeUnit.MILLISECONDS);
+        @Override public void pay(double amount) { gateway.charge(amount); }
+        @Override public void pay(Money amount) { gateway.charge(amount.toDouble()); }
+    }
+
+    static final class GatewayCard extends CreditCardPayment {
+        final SimulatedGateway gateway = new SimulatedGateway("card", 20, 5, TimeUnit.MILLISECONDS);
+        @Override public void pay(double amount) { gateway.charge(amount); }
+        @Override public void pay(Money amount) { gateway.charge(amount.toDouble()); }
+    }
+
+    interface Payer {
+        PaymentResult pay(PaymentRequest request);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        long[] phaseMillis = {
+                1000L * (args.length > 1 ? Integer.parseInt(args[1]) : 2),
+                1000L * (args.length > 2 ? Integer.parseInt(args[2]) : 5),
+                1000L * (args.length > 3 ? Integer.parseInt(args[3]) : 3)};
+        PaymentProcessor processor = new PaymentProcessor();
+
+        run("no breaker", threads, phaseMillis, null, request -> {
+            try {
+                processor.process(request.getMethod(), request.getAmount());
+                return PaymentResult.success(request);
+            } catch (RuntimeException e) {
+                return PaymentResult.failure(request, e);
+            }
+        });
+
+        GatewayCard card = new GatewayCard();
+        FailoverPaymentRouter router = FailoverPaymentRouter.builder(processor)
+                .setBreakers(CircuitBreaker.builder()
+                        .setWindowSize(50)
+                        .setMinimumCalls(10)
+                        .setSlowCallDuration(200, TimeUnit.MILLISECONDS)
+                        .setOpenDuration(1, TimeUnit.SECONDS)
+                        .setHalfOpenCalls(3))
+                .setFallback(GatewayUpi.class, card)
+                .build();
+        run("breaker + failover to card", threads, phaseMillis, router, router::process);
+    }
+
+    static void run(String name, int threads, long[] phaseMillis, FailoverPaymentRouter router, Payer payer)
+            throws InterruptedException {
+        GatewayUpi upi = new GatewayUpi();
+        long[][][] latencies = new long[3][threads][];
+        int[][] counts = new int[3][threads];
+        AtomicLong failed = new AtomicLong();
+        AtomicLong viaFallback = new AtomicLong();
+        long begin = System.nanoTime();
+        long[] phaseEnds = {
+                begin + TimeUnit.MILLISECONDS.toNanos(phaseMillis[0]),
+                begin + TimeUnit.MILLISECONDS.toNanos(phaseMillis[0] + phaseMillis[1]),
+                begin + TimeUnit.MILLISECONDS.toNanos(phaseMillis[0] + phaseMillis[1] + phaseMillis[2])};
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            for (int phase = 0; phase < 3; phase++) {
+                latencies[phase][id] = new long[1024];
+            }
+            Thread thread = new Thread(() -> {
+                PaymentRequest request = new PaymentRequest("payer-" + id, upi, Money.ofMajor(100, "INR"));
+                long now;
+                while ((now = System.nanoTime()) < phaseEnds[2]) {
+                    int phase = now < phaseEnds[0] ? 0 : now < phaseEnds[1] ? 1 : 2;
+                    PaymentResult result = payer.pay(request);
+                    long latency = System.nanoTime() - now;
+                    if (!result.isSuccess()) {
+                        failed.incrementAndGet();
+                    } else if (result.getRequest().getMethod() != upi) {
+                        viaFallback.incrementAndGet();
+                    }
+                    long[] mine = latencies[phase][id];
+                    if (counts[phase][id] == mine.length) {
+                        latencies[phase][id] = mine = Arrays.copyOf(mine, mine.length * 2);
+                    }
+                    mine[counts[phase][id]++] = latency;
+                }
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // the incident
+        while (System.nanoTime() < phaseEnds[0]) {
+            Thread.sleep(5);
+        }
+        upi.gateway.setLatency(800, 200, TimeUnit.MILLISECONDS).setFailureRate(0.3);
+        while (System.nanoTime() < phaseEnds[1]) {
+            Thread.sleep(5);
+        }
+        upi.gateway.setLatency(10, 2, TimeUnit.MILLISECONDS).setFailureRate(0);
+        done.await();
+
+        System.out.println(name + (router == null ? "" : "  [" + router.breakerFor(upi) + "]"));
+        String[] phaseNames = {"healthy", "incident", "recovered"};
+        long payments = 0;
+        for (int phase = 0; phase < 3; phase++) {
+            int total = 0;
+            for (int t = 0; t < threads; t++) {
+                total += counts[phase][t];
+            }
+            long[] all = new long[total];
+            int at = 0;
+            for (int t = 0; t < threads; t++) {
+                System.arraycopy(latencies[phase][t], 0, all, at, counts[phase][t]);
+                at += counts[phase][t];
+            }
+            Arrays.sort(all);
+            payments += total;
+            System.out.printf(Locale.ROOT, "  %-10s %,7d payments  p50 %,7.1f ms  p99 %,7.1f ms  p99.9 %,7.1f ms%n",
+                    phaseNames[phase], total, percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999));
+        }
+        System.out.printf(Locale.ROOT, "  failed %,d of %,d, paid via fallback %,d%n", failed.get(), payments, viaFallback.get());
+    }
+
+    static double percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+}
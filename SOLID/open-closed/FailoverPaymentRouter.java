@@ -0,0 +1,155 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Routes payments around sick providers. Every PaymentMethod class gets its own CircuitBreaker
+(built from one shared CircuitBreaker.Builder); while a method's breaker is OPEN its payments
+go to the configured fallback method (which may have its own fallback, up to `maxHops`)
+instead of queueing behind the slow provider.
+
+Only a refused call (breaker OPEN) fails over. A call that reached the provider and failed is
+returned as failed: the provider may have charged the payer anyway, so paying again through
+another method could charge twice.
+
+Only the pay() call is judged (PaymentProcessor.PayObserver): its latency is what counts as
+slow, and only what pay() throws counts as a failure. Waiting for a bulkhead permit or for the
+ledger's fsync is local, not the provider's slowness; a ledger error, or a payment that never
+reached pay(), records nothing and gives a HALF_OPEN trial permit back. So does an
+IllegalArgumentException from pay() - a bad request says nothing about the provider's health.
+
+Built on a PaymentProcessor, so its bulkheads still apply - or on a LedgeredPaymentProcessor,
+so every routed payment is also written ahead.
+*/
+class FailoverPaymentRouter {
+
+    static final class CircuitOpenException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    // PaymentProcessor or LedgeredPaymentProcessor
+    private interface Payments {
+        void process(PaymentMethod method, Money amount, PaymentProcessor.PayObserver observer);
+    }
+
+    // What the pay() call of one routed payment did; reported against the breaker permit.
+    private static final class Attempt implements PaymentProcessor.PayObserver {
+        private boolean called;
+        private long nanos;
+        private Throwable failure;
+
+        @Override
+        public void onPay(long nanos, Throwable failure) {
+            this.called = true;
+            this.nanos = nanos;
+            this.failure = failure;
+        }
+
+        void report(CircuitBreaker breaker, CircuitBreaker.Generation permit) {
+            if (!called || failure instanceof IllegalArgumentException) {
+                breaker.release(permit);
+            } else if (failure == null) {
+                breaker.onSuccess(permit, nanos);
+            } else {
+                breaker.onFailure(permit, nanos);
+            }
+        }
+    }
+
+    private final Payments processor;
+    private final CircuitBreaker.Builder breakers;
+    private final Map<Class<?>, PaymentMethod> fallbacks;
+    private final int maxHops;
+    private final ConcurrentHashMap<Class<?>, CircuitBreaker> breakerByMethod = new ConcurrentHashMap<>();
+
+    private FailoverPaymentRouter(Builder builder) {
+        this.processor = builder.processor;
+        this.breakers = builder.breakers;
+        this.fallbacks = new HashMap<>(builder.fallbacks);
+        this.maxHops = builder.maxHops;
+    }
+
+    // The result's request names the method that was actually used.
+    public PaymentResult process(PaymentRequest request) {
+        PaymentMethod method = request.getMethod();
+        for (int hop = 0; hop <= maxHops && method != null; hop++) {
+            CircuitBreaker breaker = breakerFor(method);
+            CircuitBreaker.Generation permit = breaker.tryAcquire();
+            if (permit != null) {
+                PaymentRequest routed = method == request.getMethod() ? request
+                        : new PaymentRequest(request.getPayer(), method, request.getAmount());
+                Attempt attempt = new Attempt();
+                try {
+                    processor.process(method, request.getAmount(), attempt);
+                    return PaymentResult.success(routed);
+                } catch (RuntimeException e) {
+                    return PaymentResult.failure(routed, e);
+                } finally {
+                    // also on an Error: a HALF_OPEN trial that is never reported leaves the breaker stuck
+                    attempt.report(breaker, permit);
+                }
+            }
+            method = fallbacks.get(method.getClass());
+        }
+        return PaymentResult.failure(request,
+                new CircuitOpenException("no payment method available for " + request.getMethod().getClass().getSimpleName()));
+    }
+
+    public CircuitBreaker breakerFor(PaymentMethod method) {
+        CircuitBreaker breaker = breakerByMethod.get(method.getClass());
+        return breaker != null ? breaker
+                : breakerByMethod.computeIfAbsent(method.getClass(), c -> breakers.build(c.getSimpleName()));
+    }
+
+    public static Builder builder(PaymentProcessor processor) {
+        return new Builder(processor::process);
+    }
+
+    public static Builder builder(LedgeredPaymentProcessor processor) {
+        return new Builder(processor::process);
+    }
+
+    // Builder
+    public static class Builder {
+        private final Payments processor;
+        private CircuitBreaker.Builder breakers = CircuitBreaker.builder();
+        private final Map<Class<?>, PaymentMethod> fallbacks = new HashMap<>();
+        private int maxHops = 2;
+
+        private Builder(Payments processor) {
+            this.processor = processor;
+        }
+
+        // Settings for every method's breaker.
+        public Builder setBreakers(CircuitBreaker.Builder breakers) {
+            this.breakers = breakers;
+            return this;
+        }
+
+        // While `primary`'s breaker is open, pay with `fallback` instead.
+        public Builder setFallback(Class<? extends PaymentMethod> primary, PaymentMethod fallback) {
+            if (primary == fallback.getClass()) {
+                throw new IllegalArgumentException("a method can't be its own fallback: " + primary.getSimpleName());
+            }
+            fallbacks.put(primary, fallback);
+            return this;
+        }
+
+        // Longest fallback chain followed for one payment.
+        public Builder setMaxHops(int maxHops) {
+            if (maxHops < 0) {
+                throw new IllegalArgumentException("maxHops must not be negative: " + maxHops);
+            }
+            this.maxHops = maxHops;
+            return this;
+        }
+
+        public FailoverPaymentRouter build() {
+            return new FailoverPaymentRouter(this);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+Latency that IdempotentPaymentProcessor adds on top of PaymentProcessor.process, at a paced
+rate (default 100k payments/sec) with 10% retries (a recent key sent again), against a store
+already holding 1M keys. pay() does nothing, so what's measured is the idempotency layer.
+
+Each call is timed on its own and the percentiles are compared with the same loop calling
+PaymentProcessor directly. A synchronized HashMap get+put of the same keys is printed too, as
+the memory-latency floor of a 1M-key map on the machine at hand. Run with "journal" to also append every new key to a file.
+
+    java IdempotencyBenchmark [paymentsPerSecond] [seconds] [journal]
+*/
+class IdempotencyBenchmark {
+
+    static final class NoOpPayment implements PaymentMethod {
+        @Override
+        public void pay(double amount) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        boolean withJournal = args.length > 2 && args[2].equals("journal");
+
+        Path dir = Files.createTempDirectory("idempotency");
+        IdempotencyStore.Builder builder = IdempotencyStore.builder()
+                .setTtl(60, TimeUnit.SECONDS)
+                .setExpectedKeys(1_000_000 + rate * seconds);
+        if (withJournal) {
+            builder.setJournal(dir.resolve("keys.journal"));
+        }
+        PaymentMethod method = new NoOpPayment();
+        PaymentProcessor processor = new PaymentProcessor();
+        try (IdempotencyStore store = builder.build()) {
+            IdempotentPaymentProcessor idempotent = new IdempotentPaymentProcessor(processor, store);
+            for (int i = 0; i < 1_000_000; i++) {
+                idempotent.process("warm-" + i, new PaymentRequest("payer-" + (i % 1000), method, Money.ofMajor(i % 500, "INR")));
+            }
+
+            // Which earlier payment each call retries (-1: a new payment). The key and request
+            // objects are built right before each call, outside the timing, the way a request
+            // freshly read off the network would be.
+            int count = rate * seconds;
+            int[] retryOf = new int[count];
+            Random random = new Random(3);
+            for (int i = 0; i < count; i++) {
+                retryOf[i] = i > 100 && random.nextInt(10) == 0 ? i - 1 - random.nextInt(100) : -1;
+            }
+            String[] key = new String[1];
+            PaymentRequest[] request = new PaymentRequest[1];
+            Call prepare = i -> {
+                int id = retryOf[i] < 0 ? i : retryOf[i];
+                key[0] = "key-" + id;
+                request[0] = new PaymentRequest("payer-" + id % 1000, method, Money.ofMajor(1 + id % 500, "INR"));
+            };
+
+            System.out.printf(Locale.ROOT, "%,d payments/sec for %d s, store holds %,d keys%s%n",
+                    rate, seconds, store.size(), withJournal ? ", journal on" : "");
+            HashMap<String, Object> bare = new HashMap<>(1 << 21);
+            for (int i = 0; i < 1_000_000; i++) {
+                bare.put("warm-" + i, method);
+            }
+            long[] map = paced(rate, count, prepare, i -> {
+                synchronized (bare) {
+                    if (bare.get(key[0]) == null) {
+                        bare.put(key[0], request[0]);
+                    }
+                }
+            });
+            long[] direct = paced(rate, count, prepare, i -> processor.process(request[0].getMethod(), request[0].getAmount()));
+            long[] layered = paced(rate, count, prepare, i -> idempotent.process(key[0], request[0]));
+            print("bare HashMap get+put", map);
+            print("PaymentProcessor.process", direct);
+            print("IdempotentPaymentProcessor", layered);
+            System.out.printf(Locale.ROOT, "added at p99: %,d ns%n", percentile(layered, 0.99) - percentile(direct, 0.99));
+        } finally {
+            Files.deleteIfExists(dir.resolve("keys.journal"));
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    interface Call {
+        void run(int i);
+    }
+
+    // Runs prepare(i) then call(i) at `rate` per second (spinning between calls); returns the
+    // latency of each call(i).
+    static long[] paced(int rate, int count, Call prepare, Call call) {
+        long[] latencies = new long[count];
+        long period = 1_000_000_000L / rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            prepare.run(i);
+            long due = start + i * period;
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                Thread.onSpinWait();
+            }
+            call.run(i);
+            latencies[i] = System.nanoTime() - now;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    static void print(String name, long[] sorted) {
+        System.out.printf(Locale.ROOT, "%-28s p50 %,7d ns  p99 %,7d ns  p99.9 %,8d ns%n", name,
+                percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999));
+    }
+}
@@ -0,0 +1,455 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+Remembers the outcome of each idempotency key for a while (the TTL), so a retried payment
+gets the original result instead of being paid twice. Used by IdempotentPaymentProcessor.
+
+- Striped map: keys are spread over `stripes` HashMaps, each guarded by its own lock. A
+  lookup locks one stripe for a hash probe, so threads working on different keys rarely
+  meet, and the sweeper can clean one stripe at a time without stopping the others.
+- The first request for a key claims it (claim returns its entry) and reports the outcome
+  with complete(). A duplicate (claim returns null) looks up the first one's result with
+  get(); if the first is still running, it waits on the same future rather than paying again.
+- A claim whose payment failed is given back with release(): the key is free again, so a
+  retry can still succeed instead of replaying the failure until the TTL runs out.
+- The same key with a different payer, method or amount is a client bug, not a retry:
+  IllegalArgumentException.
+- A daemon thread removes completed entries older than the TTL; lookups also ignore them.
+- Optional journal: every completed key is appended to a file as [length][crc32][record].
+  On startup the live records are loaded back (stopping at a torn or corrupt tail) and the
+  file is rewritten with just those, so it doesn't grow forever. Records are written
+  through to the OS on each completion (they survive a JVM crash, not a power loss).
+- A journal write that fails doesn't fail complete(): the payment was already charged, and
+  an error would invite the caller to retry it. complete() returns false instead, keeps the
+  record queued, and the store stops taking new claims (claim() throws) until a later claim
+  manages to write the queue out - otherwise a retry after a restart would find no key and
+  pay again. A partly written record is cut off before the next attempt.
+
+Expiry uses wall-clock time (currentTimeMillis) since it must mean the same after a restart.
+*/
+final class IdempotencyStore implements AutoCloseable {
+
+    static final class Entry {
+        final String payer;
+        final String method;
+        final Money amount;
+        final long expiresAtMillis;
+        final CompletableFuture<PaymentResult> result = new CompletableFuture<>();
+
+        Entry(String payer, String method, Money amount, long expiresAtMillis) {
+            this.payer = payer;
+            this.method = method;
+            this.amount = amount;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean matches(PaymentRequest request) {
+            return payer.equals(request.getPayer())
+                    && method.equals(request.getMethod().getClass().getName())
+                    && amount.equals(request.getAmount());
+        }
+
+        boolean isExpired(long nowMillis) {
+            return expiresAtMillis <= nowMillis && result.isDone();
+        }
+    }
+
+    // A completed key waiting to be journaled.
+    private static final class Completion {
+        final String key;
+        final Entry entry;
+        final PaymentResult result;
+
+        Completion(String key, Entry entry, PaymentResult result) {
+            this.key = key;
+            this.entry = entry;
+            this.result = result;
+        }
+    }
+
+    private static final class Stripe {
+        final HashMap<String, Entry> entries;
+
+        Stripe(int expectedKeys) {
+            entries = new HashMap<>((int) (expectedKeys / 0.75f) + 1);
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final long ttlMillis;
+    private final ScheduledExecutorService sweeper;
+    private final Path journalPath;
+    private final FileChannel journal;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    // guarded by `record`: completed keys not journaled yet, and the journal size up to the last good record
+    private final ArrayDeque<Completion> unjournaled = new ArrayDeque<>();
+    private long journalSize;
+    private volatile IOException journalFailure;
+
+    private IdempotencyStore(Builder builder) throws IOException {
+        int size = Integer.highestOneBit(builder.stripes - 1) << 1;
+        this.stripes = new Stripe[Math.max(size, 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(builder.expectedKeys / stripes.length);
+        }
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(stripes.length);
+        this.ttlMillis = builder.ttlMillis;
+        this.journalPath = builder.journal;
+        if (journalPath != null) {
+            load();
+            compact();
+            this.journal = FileChannel.open(journalPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.journalSize = journal.size();
+        } else {
+            this.journal = null;
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = builder.sweepIntervalMillis;
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Claims `key` for `request`: returns the new entry if the key was free (the caller must
+    // then pay and call complete(key, entry, result)), or null if the key is already taken.
+    // A free key can't be claimed while the journal is failing (UncheckedIOException): nothing
+    // new may be paid until the keys already paid are on disk. Taken keys still answer.
+    public Entry claim(String key, PaymentRequest request) {
+        Stripe stripe = stripeFor(key);
+        while (true) {
+            boolean failing = journalFailure != null;
+            long now = System.currentTimeMillis();
+            synchronized (stripe) {
+                Entry existing = stripe.entries.get(key);
+                if (existing != null && !existing.isExpired(now)) {
+                    return null;
+                }
+                if (!failing) {
+                    Entry entry = new Entry(request.getPayer(), request.getMethod().getClass().getName(),
+                            request.getAmount(), now + ttlMillis);
+                    stripe.entries.put(key, entry);
+                    return entry;
+                }
+            }
+            if (!retryJournal()) {
+                throw new UncheckedIOException("idempotency journal is failing; not taking new payments", journalFailure);
+            }
+        }
+    }
+
+    // The (possibly still pending) result of the first request with `key`, or null if the key
+    // is free. IllegalArgumentException if that request was a different payment.
+    public CompletableFuture<PaymentResult> get(String key, PaymentRequest request) {
+        Stripe stripe = stripeFor(key);
+        long now = System.currentTimeMillis();
+        Entry existing;
+        synchronized (stripe) {
+            existing = stripe.entries.get(key);
+        }
+        if (existing == null || existing.isExpired(now)) {
+            return null;
+        }
+        if (!existing.matches(request)) {
+            throw new IllegalArgumentException("idempotency key " + key + " was used for a different payment");
+        }
+        return existing.result;
+    }
+
+    // Records the outcome of a claimed key and releases anyone waiting on it. false if it
+    // couldn't be journaled: it is then kept in memory and queued, and claim() refuses new
+    // keys until the queue is written (see getJournalFailure()).
+    public boolean complete(String key, Entry entry, PaymentResult result) {
+        if (entry.result.isDone()) {
+            throw new IllegalStateException("idempotency key already completed: " + key);
+        }
+        boolean durable = journal == null || append(key, entry, result);
+        entry.result.complete(result);
+        return durable;
+    }
+
+    // Why the journal is failing, or null while it is healthy (or there is none).
+    public IOException getJournalFailure() {
+        return journalFailure;
+    }
+
+    // Gives back a claimed key whose payment didn't go through: the key is free again (and
+    // never journaled), and anyone already waiting on it gets `result`.
+    public void release(String key, Entry entry, PaymentResult result) {
+        if (entry.result.isDone()) {
+            throw new IllegalStateException("idempotency key already completed: " + key);
+        }
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.entries.remove(key, entry);
+        }
+        entry.result.complete(result);
+    }
+
+    // Entries currently held, expired or not.
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sweeper.shutdownNow();
+        if (journal != null) {
+            synchronized (record) {
+                boolean flushed = writeUnjournaled();
+                journal.close();
+                if (!flushed) {
+                    throw journalFailure;
+                }
+            }
+        }
+    }
+
+    void sweep() {
+        long now = System.currentTimeMillis();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.values().removeIf(entry -> entry.isExpired(now));
+            }
+        }
+    }
+
+    // Picks the stripe from the high bits of a mixed hash: the HashMap inside indexes by the
+    // low bits, and if both used the same bits each stripe would fill only 1/stripes of its buckets.
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return stripeShift == 32 ? stripes[0] : stripes[h >>> stripeShift];
+    }
+
+    // Journal
+
+    private boolean append(String key, Entry entry, PaymentResult result) {
+        synchronized (record) {
+            unjournaled.addLast(new Completion(key, entry, result));
+            return writeUnjournaled();
+        }
+    }
+
+    private boolean retryJournal() {
+        synchronized (record) {
+            return writeUnjournaled();
+        }
+    }
+
+    // Writes the queued records in order; false (and journalFailure set) if one fails. Called
+    // with the `record` lock held.
+    private boolean writeUnjournaled() {
+        try {
+            if (!unjournaled.isEmpty() && journal.size() != journalSize) {
+                journal.truncate(journalSize); // a torn record from the failed attempt would hide everything after it
+            }
+            while (!unjournaled.isEmpty()) {
+                Completion next = unjournaled.peekFirst();
+                Entry entry = next.entry;
+                recordBytes.reset();
+                writeRecord(next.key, entry.payer, entry.method, entry.amount, entry.expiresAtMillis, next.result);
+                ByteBuffer frame = frame();
+                while (frame.hasRemaining()) {
+                    journal.write(frame);
+                }
+                journalSize += frame.limit();
+                unjournaled.removeFirst();
+            }
+            journalFailure = null;
+            return true;
+        } catch (IOException e) {
+            journalFailure = e;
+            return false;
+        }
+    }
+
+    private void writeRecord(String key, String payer, String method, Money amount, long expiresAtMillis,
+                             PaymentResult result) throws IOException {
+        record.writeUTF(key);
+        record.writeUTF(payer);
+        record.writeUTF(method);
+        record.writeLong(amount.getMinorUnits());
+        record.writeInt(amount.currencyBits());
+        record.writeLong(expiresAtMillis);
+        record.writeBoolean(result.isSuccess());
+        if (!result.isSuccess()) {
+            String message = String.valueOf(result.getFailure());
+            record.writeUTF(message.length() > 1000 ? message.substring(0, 1000) : message);
+        }
+    }
+
+    private ByteBuffer frame() {
+        byte[] payload = recordBytes.toByteArray();
+        crc.reset();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return frame;
+    }
+
+    // Loads the unexpired records; stops at the first torn or corrupt one.
+    private void load() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (InputStream file = Files.newInputStream(journalPath);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            CRC32 check = new CRC32();
+            while (true) {
+                byte[] payload;
+                int expectedCrc;
+                try {
+                    int length = in.readInt();
+                    expectedCrc = in.readInt();
+                    if (length <= 0 || length > 1 << 20) {
+                        return;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    return;
+                }
+                check.reset();
+                check.update(payload);
+                if ((int) check.getValue() != expectedCrc) {
+                    return;
+                }
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload));
+                String key = fields.readUTF();
+                Entry entry = new Entry(fields.readUTF(), fields.readUTF(),
+                        Money.ofBits(fields.readLong(), fields.readInt()), fields.readLong());
+                boolean success = fields.readBoolean();
+                if (entry.expiresAtMillis <= now || !success) {
+                    continue; // failures are no longer kept, but older journals may hold some
+                }
+                // The original PaymentRequest is gone after a restart; callers get this outcome
+                // re-attached to their own request (PaymentResult.withRequest).
+                entry.result.complete(PaymentResult.success(null));
+                Stripe stripe = stripeFor(key);
+                synchronized (stripe) {
+                    stripe.entries.put(key, entry);
+                }
+            }
+        }
+    }
+
+    // Rewrites the journal with only the entries loaded by load().
+    private void compact() throws IOException {
+        Path tmp = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    for (Iterator<Map.Entry<String, Entry>> it = stripe.entries.entrySet().iterator(); it.hasNext(); ) {
+                        Map.Entry<String, Entry> e = it.next();
+                        Entry entry = e.getValue();
+                        recordBytes.reset();
+                        writeRecord(e.getKey(), entry.payer, entry.method, entry.amount, entry.expiresAtMillis,
+                                entry.result.join());
+                        ByteBuffer frame = frame();
+                        while (frame.hasRemaining()) {
+                            out.write(frame);
+                        }
+                    }
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tmp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Builder
+    public static class Builder {
+        private long ttlMillis = TimeUnit.HOURS.toMillis(24);
+        private long sweepIntervalMillis = TimeUnit.MINUTES.toMillis(1);
+        private int stripes = 64;
+        private int expectedKeys = 0;
+        private Path journal;
+
+        private Builder() {
+        }
+
+        // How long a key is remembered after its first use.
+        public Builder setTtl(long value, TimeUnit unit) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("ttl must be positive: " + value);
+            }
+            this.ttlMillis = unit.toMillis(value);
+            return this;
+        }
+
+        public Builder setSweepInterval(long value, TimeUnit unit) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("sweep interval must be positive: " + value);
+            }
+            this.sweepIntervalMillis = Math.max(1, unit.toMillis(value));
+            return this;
+        }
+
+        // Rounded up to a power of two.
+        public Builder setStripes(int stripes) {
+            if (stripes <= 0) {
+                throw new IllegalArgumentException("stripes must be positive: " + stripes);
+            }
+            this.stripes = stripes;
+            return this;
+        }
+
+        // Pre-sizes the maps so they don't rehash (a pause proportional to the stripe) while filling up.
+        public Builder setExpectedKeys(int expectedKeys) {
+            if (expectedKeys < 0) {
+                throw new IllegalArgumentException("expectedKeys must not be negative: " + expectedKeys);
+            }
+            this.expectedKeys = expectedKeys;
+            return this;
+        }
+
+        // Append-only file that keeps the keys across restarts; null (default) = memory only.
+        public Builder setJournal(Path journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        public IdempotencyStore build() throws IOException {
+            return new IdempotencyStore(this);
+        }
+    }
+}
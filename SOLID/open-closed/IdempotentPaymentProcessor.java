@@ -0,0 +1,60 @@
+import java.util.concurrent.CompletableFuture;
+
+/*
+PaymentProcessor with idempotency keys: the client sends a key with each payment (a UUID it
+generates once per payment and reuses on every retry). The first request with a key is paid;
+any later request with the same key gets the original PaymentResult back and pay() is not
+called again - even if the first attempt is still running, or the process restarted in
+between (with a journal, see IdempotencyStore).
+
+Only a successful payment is remembered. A failed one (say a transient decline) releases its
+key, so the client's retry with the same key is paid normally; requests that were already
+waiting on the failed attempt get its failure.
+
+If the journal can't record a payment that went through, the success is still returned - it
+was charged, and an error would only invite a retry. The store then refuses new keys until the
+journal works again (claim() throws before anything is paid), so no key is lost to a restart
+while payments go on; IdempotencyStore.getJournalFailure() says why.
+
+A decorator: PaymentProcessor itself doesn't change.
+*/
+class IdempotentPaymentProcessor {
+    private final PaymentProcessor processor;
+    private final IdempotencyStore store;
+
+    IdempotentPaymentProcessor(PaymentProcessor processor, IdempotencyStore store) {
+        this.processor = processor;
+        this.store = store;
+    }
+
+    public PaymentResult process(String idempotencyKey, PaymentRequest request) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            throw new IllegalArgumentException("idempotency key is required");
+        }
+        IdempotencyStore.Entry claim;
+        while ((claim = store.claim(idempotencyKey, request)) == null) {
+            CompletableFuture<PaymentResult> original = store.get(idempotencyKey, request);
+            if (original != null) {
+                return original.join().withRequest(request);
+            }
+            // the first one expired in between: try to claim again
+        }
+        PaymentResult result = null;
+        try {
+            processor.process(request.getMethod(), request.getAmount());
+            result = PaymentResult.success(request);
+        } catch (RuntimeException e) {
+            result = PaymentResult.failure(request, e);
+        } finally {
+            if (result == null) { // an Error escaped pay(): don't leave duplicates waiting forever
+                result = PaymentResult.failure(request, new IllegalStateException("payment aborted"));
+            }
+            if (result.isSuccess()) {
+                store.complete(idempotencyKey, claim, result); // false: not journaled, see class comment
+            } else {
+                store.release(idempotencyKey, claim, result);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+PaymentProcessor with a write-ahead PaymentLedger: an intent record is on disk before pay() is
+called, and an outcome record (paid or failed) is on disk before process() returns. A crash in
+between leaves the intent PENDING in the ledger instead of losing a payment that may have been
+charged (PaymentLedgerTool totals lists those).
+
+If the ledger fails before pay(), the payment is aborted - nothing was charged. If it fails
+after pay() has run, pay()'s outcome still stands: process() doesn't report a charged payment
+as failed, which would invite a retry and a double charge; the intent stays PENDING and
+getLedgerFailures() counts it.
+
+Only Money amounts can be ledgered; there is no process(PaymentMethod, double). Concurrent
+callers share each fsync (group commit), so many threads paying at once cost little more
+than one.
+
+A decorator, like IdempotentPaymentProcessor: PaymentProcessor itself doesn't change.
+*/
+class LedgeredPaymentProcessor {
+    private final PaymentProcessor processor;
+    private final PaymentLedger ledger;
+    private final AtomicInteger ledgerFailures = new AtomicInteger();
+
+    LedgeredPaymentProcessor(PaymentProcessor processor, PaymentLedger ledger) {
+        this.processor = processor;
+        this.ledger = ledger;
+    }
+
+    public void process(PaymentMethod method, Money amount) {
+        process(method, amount, null);
+    }
+
+    // See PaymentProcessor.process(PaymentMethod, Money, PayObserver); the ledger writes are
+    // not part of what `observer` sees. null = no observer.
+    public void process(PaymentMethod method, Money amount, PaymentProcessor.PayObserver observer) {
+        String name = method.getClass().getSimpleName();
+        // a ledger failure here aborts the payment before anything is charged
+        long intent = ledger.appendIntent(name, amount, System.currentTimeMillis());
+        ledger.awaitDurable(intent);
+        boolean paid = false;
+        try {
+            if (observer == null) {
+                processor.process(method, amount);
+            } else {
+                processor.process(method, amount, observer);
+            }
+            paid = true;
+        } finally {
+            recordOutcome(intent, name, amount, paid);
+        }
+    }
+
+    // Payments whose outcome couldn't be written to the ledger after pay() ran; each one's
+    // intent is left PENDING there and must be reconciled with the provider.
+    public int getLedgerFailures() {
+        return ledgerFailures.get();
+    }
+
+    // Never throws: pay() has already run, and its outcome (or exception) is what the caller
+    // must see. An outcome that can't be recorded leaves the intent PENDING for reconciliation.
+    private void recordOutcome(long intent, String method, Money amount, boolean paid) {
+        try {
+            ledger.awaitDurable(ledger.appendOutcome(intent, method, amount, System.currentTimeMillis(), paid));
+        } catch (RuntimeException e) {
+            ledgerFailures.incrementAndGet();
+        }
+    }
+}
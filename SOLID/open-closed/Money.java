@@ -0,0 +1,245 @@
+import java.util.Currency;
+
+/*
+Exact amount of money: a long count of minor units (paise, cents) plus the ISO 4217 currency
+packed into one int (3 ASCII letters + the currency's fraction digits). No double, so no
+rounding drift (0.1 + 0.2 is exactly 0.3), and no BigDecimal, so adding two amounts is a
+single long addition.
+
+Arithmetic is overflow-checked (Math.addExact & co. throw ArithmeticException) and only
+allowed between amounts of the same currency.
+
+appendTo() formats into a caller-supplied StringBuilder ("₹2500.00") without allocating;
+formatBuffer() hands out a per-thread StringBuilder to format into.
+*/
+final class Money implements Comparable<Money> {
+
+    private static final long[] POW10 = {1, 10, 100, 1_000, 10_000};
+    private static final ThreadLocal<StringBuilder> FORMAT_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    private final long minorUnits;
+    private final int currency; // fraction digits << 24 | 3 ASCII letters
+
+    private Money(long minorUnits, int currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    // Money.ofMinor(250050, "INR") is ₹2500.50
+    public static Money ofMinor(long minorUnits, String currencyCode) {
+        return new Money(minorUnits, pack(currencyCode));
+    }
+
+    // Money.ofMajor(2500, "INR") is ₹2500.00
+    public static Money ofMajor(long majorUnits, String currencyCode) {
+        int currency = pack(currencyCode);
+        return new Money(Math.multiplyExact(majorUnits, POW10[fractionDigits(currency)]), currency);
+    }
+
+    // Money.parse("2500.5", "INR") is ₹2500.50; more decimals than the currency has is an error.
+    public static Money parse(CharSequence text, String currencyCode) {
+        int currency = pack(currencyCode);
+        int digits = fractionDigits(currency);
+        int i = 0;
+        int length = text.length();
+        boolean negative = length > 0 && text.charAt(0) == '-';
+        if (negative || (length > 0 && text.charAt(0) == '+')) {
+            i++;
+        }
+        long units = 0;
+        int decimals = -1;
+        boolean any = false;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (decimals >= 0 && ++decimals > digits) {
+                    throw new NumberFormatException("too many decimals for " + currencyCode + ": " + text);
+                }
+                try {
+                    units = Math.addExact(Math.multiplyExact(units, 10), negative ? -(c - '0') : c - '0');
+                } catch (ArithmeticException e) {
+                    throw new NumberFormatException("amount out of range: " + text);
+                }
+                any = true;
+            } else {
+                throw new NumberFormatException("not an amount: " + text);
+            }
+        }
+        if (!any) {
+            throw new NumberFormatException("not an amount: " + text);
+        }
+        try {
+            return new Money(Math.multiplyExact(units, POW10[digits - Math.max(decimals, 0)]), currency);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("amount out of range: " + text);
+        }
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public String getCurrencyCode() {
+        return new String(new char[]{(char) (currency >>> 16 & 0xff), (char) (currency >>> 8 & 0xff), (char) (currency & 0xff)});
+    }
+
+    // The packed currency (fraction digits << 24 | 3 ASCII letters), for compact binary records.
+    int currencyBits() {
+        return currency;
+    }
+
+    // Inverse of getMinorUnits() + currencyBits().
+    static Money ofBits(long minorUnits, int currencyBits) {
+        int digits = fractionDigits(currencyBits);
+        if (digits >= POW10.length) {
+            throw new IllegalArgumentException("bad currency bits: " + Integer.toHexString(currencyBits));
+        }
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int c = currencyBits >>> shift & 0xff;
+            if (c < 'A' || c > 'Z') {
+                throw new IllegalArgumentException("bad currency bits: " + Integer.toHexString(currencyBits));
+            }
+        }
+        return new Money(minorUnits, currencyBits);
+    }
+
+    public int getFractionDigits() {
+        return fractionDigits(currency);
+    }
+
+    public boolean isSameCurrency(Money other) {
+        return currency == other.currency;
+    }
+
+    public Money plus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    // Sum of all amounts (all in one currency): one long accumulator, one result object.
+    public static Money sum(Money[] amounts) {
+        if (amounts.length == 0) {
+            throw new IllegalArgumentException("no amounts: the currency is unknown");
+        }
+        int currency = amounts[0].currency;
+        long total = 0;
+        for (Money amount : amounts) {
+            if (amount.currency != currency) {
+                amounts[0].checkCurrency(amount);
+            }
+            total = Math.addExact(total, amount.minorUnits);
+        }
+        return new Money(total, currency);
+    }
+
+    public Money times(long factor) {
+        return new Money(Math.multiplyExact(minorUnits, factor), currency);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    // For code that still takes double; loses exactness beyond 2^53 minor units.
+    public double toDouble() {
+        return (double) minorUnits / POW10[fractionDigits(currency)];
+    }
+
+    // Appends "₹2500.50" (symbol for INR, USD, EUR, GBP, JPY; otherwise "CHF 2500.50"). Allocates nothing.
+    public StringBuilder appendTo(StringBuilder out) {
+        int digits = fractionDigits(currency);
+        long pow = POW10[digits];
+        long major = minorUnits / pow;
+        long minor = Math.abs(minorUnits % pow);
+        if (minorUnits < 0) {
+            out.append('-');
+        }
+        appendSymbol(out);
+        if (major == Long.MIN_VALUE) {
+            out.append("9223372036854775808"); // -Long.MIN_VALUE doesn't fit in a long
+        } else {
+            out.append(Math.abs(major));
+        }
+        if (digits > 0) {
+            out.append('.');
+            for (long p = pow / 10; p > minor && p > 1; p /= 10) {
+                out.append('0');
+            }
+            out.append(minor);
+        }
+        return out;
+    }
+
+    // A per-thread StringBuilder, emptied, for appendTo().
+    public static StringBuilder formatBuffer() {
+        StringBuilder buffer = FORMAT_BUFFER.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).minorUnits == minorUnits && ((Money) o).currency == currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits) * 31 + currency;
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24)).toString();
+    }
+
+    private void appendSymbol(StringBuilder out) {
+        switch (currency & 0xffffff) {
+            case 'I' << 16 | 'N' << 8 | 'R': out.append('₹'); break;
+            case 'U' << 16 | 'S' << 8 | 'D': out.append('$'); break;
+            case 'E' << 16 | 'U' << 8 | 'R': out.append('€'); break;
+            case 'G' << 16 | 'B' << 8 | 'P': out.append('£'); break;
+            case 'J' << 16 | 'P' << 8 | 'Y': out.append('¥'); break;
+            default:
+                out.append((char) (currency >>> 16 & 0xff)).append((char) (currency >>> 8 & 0xff))
+                        .append((char) (currency & 0xff)).append(' ');
+        }
+    }
+
+    private void checkCurrency(Money other) {
+        if (currency != other.currency) {
+            throw new IllegalArgumentException("currency mismatch: " + getCurrencyCode() + " vs " + other.getCurrencyCode());
+        }
+    }
+
+    private static int fractionDigits(int currency) {
+        return currency >>> 24;
+    }
+
+    private static int pack(String code) {
+        if (code.length() != 3) {
+            throw new IllegalArgumentException("not an ISO 4217 code: " + code);
+        }
+        int digits = Math.max(0, Currency.getInstance(code).getDefaultFractionDigits());
+        if (digits >= POW10.length) {
+            throw new IllegalArgumentException("unsupported fraction digits for " + code + ": " + digits);
+        }
+        return digits << 24 | code.charAt(0) << 16 | code.charAt(1) << 8 | code.charAt(2);
+    }
+}
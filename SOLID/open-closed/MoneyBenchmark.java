@@ -0,0 +1,96 @@
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+Summing amounts with Money vs BigDecimal vs double: 100M additions by default (an array of 1M
+random amounts between ₹0.01 and ₹100000.00, summed 100 times).
+
+Money and BigDecimal must agree exactly; the double total shows how far rounding drifts.
+Also times Money.appendTo() formatting into a reused buffer.
+
+    java MoneyBenchmark [amounts] [passes]
+*/
+class MoneyBenchmark {
+
+    static volatile Object sink;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Random random = new Random(42);
+        Money[] money = new Money[count];
+        BigDecimal[] decimals = new BigDecimal[count];
+        double[] doubles = new double[count];
+        for (int i = 0; i < count; i++) {
+            long paise = 1 + (long) (random.nextDouble() * 10_000_000);
+            money[i] = Money.ofMinor(paise, "INR");
+            decimals[i] = BigDecimal.valueOf(paise, 2);
+            doubles[i] = paise / 100.0;
+        }
+        long additions = (long) count * passes;
+        System.out.printf(Locale.ROOT, "%,d additions%n", additions);
+
+        for (int round = 0; round < 3; round++) { // round 0 is warm-up
+            boolean report = round > 0;
+
+            long begin = System.nanoTime();
+            Money moneyTotal = Money.ofMinor(0, "INR");
+            for (int p = 0; p < passes; p++) {
+                for (Money m : money) {
+                    moneyTotal = moneyTotal.plus(m);
+                }
+            }
+            print(report, "Money.plus", begin, additions, moneyTotal);
+
+            begin = System.nanoTime();
+            Money summed = Money.ofMinor(0, "INR");
+            for (int p = 0; p < passes; p++) {
+                summed = summed.plus(Money.sum(money));
+            }
+            print(report, "Money.sum", begin, additions, summed);
+
+            begin = System.nanoTime();
+            BigDecimal decimalTotal = BigDecimal.ZERO;
+            for (int p = 0; p < passes; p++) {
+                for (BigDecimal d : decimals) {
+                    decimalTotal = decimalTotal.add(d);
+                }
+            }
+            print(report, "BigDecimal", begin, additions, decimalTotal.toPlainString());
+
+            begin = System.nanoTime();
+            double doubleTotal = 0;
+            for (int p = 0; p < passes; p++) {
+                for (double d : doubles) {
+                    doubleTotal += d;
+                }
+            }
+            print(report, "double", begin, additions, String.format(Locale.ROOT, "%.2f", doubleTotal));
+
+            if (moneyTotal.getMinorUnits() != decimalTotal.movePointRight(2).longValueExact() || !summed.equals(moneyTotal)) {
+                System.out.println("Money and BigDecimal disagree: " + moneyTotal + " vs " + decimalTotal);
+                System.exit(1);
+            }
+            if (report) {
+                System.out.printf(Locale.ROOT, "  double drift: %.6f rupees%n",
+                        doubleTotal - decimalTotal.doubleValue());
+            }
+
+            begin = System.nanoTime();
+            long length = 0;
+            for (Money m : money) {
+                length += m.appendTo(Money.formatBuffer()).length();
+            }
+            print(report, "Money.appendTo", begin, count, length + " chars");
+        }
+    }
+
+    static void print(boolean report, String name, long begin, long ops, Object result) {
+        long elapsed = System.nanoTime() - begin;
+        sink = result;
+        if (report) {
+            System.out.printf(Locale.ROOT, "%-16s %6.2f ns/op  total %s%n", name, (double) elapsed / ops, result);
+        }
+    }
+}
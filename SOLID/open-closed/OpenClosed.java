@@ -1,3 +1,9 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 /* Software entities (classes, modules, functions) should be open for extension but closed for modification.
 
 Without OCP
@@ -33,11 +39,55 @@ The more payment types you add, the more complex and error-prone it becomes.
 
 // 4️⃣ Main - With OCP
 public class OpenClosed {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         PaymentProcessor processor = new PaymentProcessor();
 
         processor.process(new CreditCardPayment(), 2500);
         processor.process(new PayPalPayment(), 1200);
         processor.process(new UPIPayment(), 500);
+
+        // Exact amounts: no double rounding ("Paid ₹0.30", not 0.30000000000000004)
+        processor.process(new UPIPayment(), Money.parse("0.10", "INR").plus(Money.parse("0.20", "INR")));
+
+        // Plugins: implementations listed in META-INF/services/PaymentMethod, dispatched by id
+        PaymentMethodRegistry registry = PaymentMethodRegistry.load();
+        int upiId = registry.idOf("UPIPayment");
+        System.out.println("Registered " + registry.names() + ", UPIPayment has id " + upiId);
+        registry.process(upiId, Money.ofMajor(750, "INR"));
+
+        // Idempotency keys: a retry with the same key returns the first result, UPI is paid once
+        try (IdempotencyStore store = IdempotencyStore.builder().setTtl(24, TimeUnit.HOURS).build()) {
+            IdempotentPaymentProcessor idempotent = new IdempotentPaymentProcessor(processor, store);
+            PaymentRequest order = new PaymentRequest("dave", new UPIPayment(), Money.ofMajor(999, "INR"));
+            System.out.println(idempotent.process("order-42", order));
+            System.out.println(idempotent.process("order-42", order) + " (retry, not paid again)");
+        }
+
+        // Ledger: every payment is written ahead (group-committed) and can be replayed into totals
+        Path ledgerFile = Files.createTempFile("payments", ".ledger");
+        try (PaymentLedger ledger = PaymentLedger.open(ledgerFile)) {
+            LedgeredPaymentProcessor recorded = new LedgeredPaymentProcessor(processor, ledger);
+            recorded.process(new CreditCardPayment(), Money.ofMajor(300, "INR"));
+            recorded.process(new UPIPayment(), Money.parse("49.99", "INR"));
+            recorded.process(new UPIPayment(), Money.ofMajor(50, "INR"));
+        }
+        PaymentLedgerTool.printTotals(ledgerFile);
+        Files.delete(ledgerFile);
+
+        // Batch: each method class settles on its own worker pool; alice's payments stay in order.
+        PaymentMethod card = new CreditCardPayment();
+        PaymentMethod payPal = new PayPalPayment();
+        PaymentMethod upi = new UPIPayment();
+        List<PaymentRequest> batch = List.of(
+                new PaymentRequest("alice", card, Money.ofMajor(100, "INR")),
+                new PaymentRequest("bob", upi, Money.ofMajor(40, "INR")),
+                new PaymentRequest("alice", payPal, Money.ofMajor(250, "INR")),
+                new PaymentRequest("carol", card, Money.ofMajor(75, "INR")),
+                new PaymentRequest("alice", upi, Money.ofMajor(10, "INR")));
+        List<CompletableFuture<PaymentResult>> results = processor.processAll(batch, true);
+        for (CompletableFuture<PaymentResult> result : results) {
+            System.out.println(result.join());
+        }
+        processor.shutdown();
     }
 }
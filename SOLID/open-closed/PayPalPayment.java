@@ -1,6 +1,11 @@
-class PayPalPayment implements PaymentMethod {
+public class PayPalPayment implements PaymentMethod {
     @Override
     public void pay(double amount) {
         System.out.println("Paid ₹" + amount + " using PayPal.");
     }
+
+    @Override
+    public void pay(Money amount) {
+        System.out.println(amount.appendTo(Money.formatBuffer().append("Paid ")).append(" using PayPal."));
+    }
 }
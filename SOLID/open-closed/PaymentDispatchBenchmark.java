@@ -0,0 +1,102 @@
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/*
+Cost of picking the PaymentMethod for a payment as the number of registered methods grows
+(3, 10, 50, 200):
+
+    registry id    PaymentMethodRegistry.process(id, amount) - array index
+    HashMap name   methods.get(name).pay(amount)
+    if-chain name  if (name.equals("...")) ... else if ... - the "Without OCP" processor
+
+The trace picks methods uniformly at random. All methods are instances of one small class, so
+the numbers isolate the lookup; with many distinct implementation classes the final pay()
+call becomes megamorphic in every variant alike, which adds a constant, not a per-method cost.
+
+    java PaymentDispatchBenchmark [payments]
+*/
+class PaymentDispatchBenchmark {
+
+    static final int[] SIZES = {3, 10, 50, 200};
+
+    static final class CountingPayment implements PaymentMethod {
+        double total;
+
+        @Override
+        public void pay(double amount) {
+            total += amount;
+        }
+    }
+
+    static volatile double sink;
+
+    public static void main(String[] args) {
+        int payments = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(1);
+        System.out.printf(Locale.ROOT, "%8s %14s %14s %14s%n", "methods", "registry id", "HashMap name", "if-chain name");
+        for (int round = 0; round < 2; round++) { // first round is warm-up
+            for (int size : SIZES) {
+                PaymentMethodRegistry registry = new PaymentMethodRegistry();
+                Map<String, PaymentMethod> byName = new HashMap<>();
+                String[] names = new String[size];
+                PaymentMethod[] methods = new PaymentMethod[size];
+                for (int i = 0; i < size; i++) {
+                    names[i] = String.format(Locale.ROOT, "Method-%03d", i);
+                    methods[i] = new CountingPayment();
+                    registry.register(names[i], methods[i]);
+                    byName.put(names[i], methods[i]);
+                }
+                int[] ids = new int[payments];
+                String[] traceNames = new String[payments];
+                for (int i = 0; i < payments; i++) {
+                    ids[i] = random.nextInt(size);
+                    // a fresh String per payment, as if it came off the wire
+                    traceNames[i] = new String(names[ids[i]].toCharArray());
+                }
+
+                double registryNs = Double.MAX_VALUE; // best of 5 passes
+                double mapNs = Double.MAX_VALUE;
+                double chainNs = Double.MAX_VALUE;
+                for (int pass = 0; pass < 5; pass++) {
+                    long begin = System.nanoTime();
+                    for (int id : ids) {
+                        registry.process(id, 1.0);
+                    }
+                    registryNs = Math.min(registryNs, (System.nanoTime() - begin) / (double) payments);
+
+                    begin = System.nanoTime();
+                    for (String name : traceNames) {
+                        byName.get(name).pay(1.0);
+                    }
+                    mapNs = Math.min(mapNs, (System.nanoTime() - begin) / (double) payments);
+
+                    begin = System.nanoTime();
+                    for (String name : traceNames) {
+                        ifChain(names, methods, name).pay(1.0);
+                    }
+                    chainNs = Math.min(chainNs, (System.nanoTime() - begin) / (double) payments);
+                }
+                double total = 0;
+                for (PaymentMethod method : methods) {
+                    total += ((CountingPayment) method).total;
+                }
+                sink = total;
+                if (round == 1) {
+                    System.out.printf(Locale.ROOT, "%8d %11.2f ns %11.2f ns %11.2f ns%n", size, registryNs, mapNs, chainNs);
+                }
+            }
+        }
+    }
+
+    // Same work as a hand-written if/else-if chain of name.equals("...") checks.
+    static PaymentMethod ifChain(String[] names, PaymentMethod[] methods, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (name.equals(names[i])) {
+                return methods[i];
+            }
+        }
+        throw new IllegalArgumentException("unknown payment method: " + name);
+    }
+}
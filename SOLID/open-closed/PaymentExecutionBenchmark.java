@@ -0,0 +1,131 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+PaymentProcessor.processAll() with a bounded platform-thread pool vs virtual threads, with
+every payment in flight at once (default 10k) against simulated gateways:
+
+    card    20 ms ± 5
+    UPI     10 ms ± 5
+    PayPal 100 ms ± 50   <- the slow provider
+
+For each method it reports when its payments finished, measured from the start of the batch
+(p50 / p99 / max), plus wall time and the peak number of live threads.
+
+    java PaymentExecutionBenchmark [payments] [poolWorkersPerMethod] [bulkheadPerMethod]
+
+Virtual threads need Java 21+. On older JDKs VIRTUAL_THREADS mode falls back to the bounded
+per-method pools (poolWorkersPerMethod each), and the output says so.
+*/
+class PaymentExecutionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int payments = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int poolWorkers = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int bulkhead = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        for (int round = 0; round < 2; round++) { // first round is warm-up
+            boolean report = round == 1;
+            run("platform pool, " + poolWorkers + "/method", report, payments,
+                    PaymentProcessor.builder().setWorkersPerMethod(poolWorkers).setQueueCapacity(payments));
+            run("virtual threads, bulkhead " + bulkhead + "/method", report, payments,
+                    PaymentProcessor.builder()
+                            .setExecutionMode(PaymentProcessor.ExecutionMode.VIRTUAL_THREADS)
+                            .setWorkersPerMethod(poolWorkers) // only used without virtual threads
+                            .setQueueCapacity(payments)
+                            .setMaxConcurrentPerMethod(bulkhead));
+        }
+    }
+
+    static void run(String name, boolean report, int payments, PaymentProcessor.Builder builder)
+            throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        PaymentProcessor processor = builder.build();
+
+        Recorder card = new Recorder(new SimulatedGateway("card", 20, 5, TimeUnit.MILLISECONDS), payments);
+        Recorder upi = new Recorder(new SimulatedGateway("upi", 10, 5, TimeUnit.MILLISECONDS), payments);
+        Recorder payPal = new Recorder(new SimulatedGateway("paypal", 100, 50, TimeUnit.MILLISECONDS), payments);
+        PaymentMethod[] methods = {new Card(card), new Upi(upi), new PayPal(payPal)};
+        List<PaymentRequest> batch = new ArrayList<>(payments);
+        for (int i = 0; i < payments; i++) {
+            batch.add(new PaymentRequest("payer-" + i, methods[i % methods.length], Money.ofMajor(1 + i % 500, "INR")));
+        }
+
+        long begin = System.nanoTime();
+        card.begin = upi.begin = payPal.begin = begin;
+        List<CompletableFuture<PaymentResult>> results = processor.processAll(batch);
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+        long elapsed = System.nanoTime() - begin;
+        int peakThreads = threads.getPeakThreadCount();
+        processor.shutdown();
+        processor.awaitTermination(1, TimeUnit.MINUTES);
+        Thread.sleep(200); // let the finished workers exit before the next run resets the peak
+
+        if (report) {
+            String mode = processor.getExecutionMode() == PaymentProcessor.ExecutionMode.VIRTUAL_THREADS
+                    && !processor.usesVirtualThreads() ? "  [no virtual threads on Java "
+                    + Runtime.version().feature() + ": per-method pools]" : "";
+            System.out.printf(Locale.ROOT, "%s%s%n  wall %,d ms, peak threads %,d%n",
+                    name, mode, TimeUnit.NANOSECONDS.toMillis(elapsed), peakThreads);
+            card.print("card");
+            upi.print("upi");
+            payPal.print("paypal");
+        }
+    }
+
+    // Records when each payment finished, relative to the start of the batch.
+    static final class Recorder {
+        final SimulatedGateway gateway;
+        final long[] finished;
+        final AtomicInteger count = new AtomicInteger();
+        volatile long begin;
+
+        Recorder(SimulatedGateway gateway, int capacity) {
+            this.gateway = gateway;
+            this.finished = new long[capacity];
+        }
+
+        void pay(double amount) {
+            gateway.charge(amount);
+            finished[count.getAndIncrement()] = System.nanoTime() - begin;
+        }
+
+        void print(String name) {
+            long[] sorted = Arrays.copyOf(finished, count.get());
+            Arrays.sort(sorted);
+            System.out.printf(Locale.ROOT, "  %-7s done after  p50 %,7.1f ms  p99 %,7.1f ms  max %,7.1f ms%n", name,
+                    sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6,
+                    sorted[sorted.length - 1] / 1e6);
+        }
+    }
+
+    // One class per provider: PaymentProcessor gives every PaymentMethod class its own pool and bulkhead.
+    static final class Card extends CreditCardPayment {
+        final Recorder recorder;
+        Card(Recorder recorder) { this.recorder = recorder; }
+        @Override public void pay(double amount) { recorder.pay(amount); }
+        @Override public void pay(Money amount) { recorder.pay(amount.toDouble()); }
+    }
+
+    static final class Upi extends UPIPayment {
+        final Recorder recorder;
+        Upi(Recorder recorder) { this.recorder = recorder; }
+        @Override public void pay(double amount) { recorder.pay(amount); }
+        @Override public void pay(Money amount) { recorder.pay(amount.toDouble()); }
+    }
+
+    static final class PayPal extends PayPalPayment {
+        final Recorder recorder;
+        PayPal(Recorder recorder) { this.recorder = recorder; }
+        @Override public void pay(double amount) { recorder.pay(amount); }
+        @Override public void pay(Money amount) { recorder.pay(amount.toDouble()); }
+    }
+}
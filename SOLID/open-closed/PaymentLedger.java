@@ -0,0 +1,483 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+Append-only, checksummed ledger of every payment LedgeredPaymentProcessor settles: method,
+amount, timestamp and outcome. After a crash, replay() reads it back, e.g. to rebuild totals
+per payment method (see PaymentLedgerTool).
+
+Write-ahead: LedgeredPaymentProcessor makes an intent record (outcome PENDING) durable before
+it calls pay(), and appends an outcome record pointing back at the intent once pay() returns.
+A crash between the two leaves an intent without an outcome - a payment that may or may
+not have been charged, which must be checked with the provider rather than forgotten.
+
+Record layout (big-endian), one after another from offset 0:
+
+    [int length][int crc32 of the next `length` bytes]
+    [long sequence][long timestamp millis][long intent sequence, 0 = none]
+    [long amount minor units][int currency bits]
+    [byte outcome: 2 = pending, 1 = paid, 0 = failed][byte name length][method name, UTF-8]
+
+Sequence numbers start at 1 and go up by one, so a lost record shows up as a gap.
+
+Group commit: append() copies the record into an in-memory batch and returns its sequence
+number; one writer thread takes the whole batch, writes it with a single FileChannel.write
+and makes it durable with a single force(). While that fsync runs, new records collect in a
+second buffer, so under load one fsync covers hundreds of payments instead of one each.
+awaitDurable(seq) blocks until the batch holding `seq` has been forced to disk.
+
+On open, the existing file is scanned. A torn tail - an incomplete last record running to end
+of file, left by a crash mid-write - is cut off before new records are appended. Any other damage
+(bad checksum, bad length, sequence gap) makes open() fail and leaves the file as it is: the
+records after it are real payments, so an operator has to look at it with PaymentLedgerTool.
+*/
+final class PaymentLedger implements AutoCloseable {
+
+    static final int HEADER_SIZE = 8;
+    static final int FIXED_SIZE = 8 + 8 + 8 + 8 + 4 + 1 + 1;
+    static final int MAX_NAME_LENGTH = 255;
+
+    static final byte FAILED = 0;
+    static final byte PAID = 1;
+    static final byte PENDING = 2;
+
+    // One replayed record.
+    static final class Entry {
+        final long sequence;
+        final long timestampMillis;
+        final long intent; // sequence of the PENDING record this outcome settles, 0 if none
+        final String method;
+        final Money amount;
+        final byte outcome;
+
+        Entry(long sequence, long timestampMillis, long intent, String method, Money amount, byte outcome) {
+            this.sequence = sequence;
+            this.timestampMillis = timestampMillis;
+            this.intent = intent;
+            this.method = method;
+            this.amount = amount;
+            this.outcome = outcome;
+        }
+
+        boolean isPaid() {
+            return outcome == PAID;
+        }
+
+        boolean isPending() {
+            return outcome == PENDING;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + timestampMillis + " " + method + " " + amount
+                    + (outcome == PAID ? " paid" : outcome == FAILED ? " FAILED" : " PENDING")
+                    + (intent == 0 ? "" : " (intent #" + intent + ")");
+        }
+    }
+
+    // What a scan of a ledger file found.
+    static final class ScanResult {
+        final long records;
+        final long lastSequence;
+        final long validBytes;
+        final long fileBytes;
+        final String problem; // null when every byte of the file is intact records
+        final boolean tornTail; // the problem is an incomplete last record, nothing follows it
+
+        ScanResult(long records, long lastSequence, long validBytes, long fileBytes, String problem, boolean tornTail) {
+            this.records = records;
+            this.lastSequence = lastSequence;
+            this.validBytes = validBytes;
+            this.fileBytes = fileBytes;
+            this.problem = problem;
+            this.tornTail = tornTail;
+        }
+
+        boolean isClean() {
+            return problem == null;
+        }
+
+        // Clean, or only a torn tail that open() may cut off.
+        boolean isRecoverable() {
+            return problem == null || tornTail;
+        }
+
+        @Override
+        public String toString() {
+            return records + " records, last #" + lastSequence + ", " + validBytes + " of " + fileBytes + " bytes valid"
+                    + (problem == null ? "" : ", " + problem);
+        }
+    }
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final ScanResult recovered;
+    private final ConcurrentHashMap<String, byte[]> names = new ConcurrentHashMap<>();
+    private final CRC32 crc = new CRC32();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasData = lock.newCondition();
+    private final Condition hasRoom = lock.newCondition();
+    private final Object synced = new Object(); // awaitDurable() waits here, off the append lock
+    private ByteBuffer active;   // records being appended (guarded by lock)
+    private ByteBuffer flushing; // batch the writer is writing
+    private long nextSequence;   // guarded by lock
+    private long lastAppended;   // guarded by lock
+    private boolean closed;      // guarded by lock
+    private volatile long durableSequence;
+    private volatile IOException failure;
+    private long batches;        // guarded by lock
+    private final Thread writer;
+
+    private PaymentLedger(Builder builder) throws IOException {
+        this.fsync = builder.fsync;
+        this.channel = FileChannel.open(builder.file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.recovered = scan(channel, null);
+            if (!recovered.isRecoverable()) {
+                throw new IOException("payment ledger " + builder.file + " is corrupt (" + recovered.problem
+                        + "); not opening it - inspect it with PaymentLedgerTool verify");
+            }
+            if (recovered.validBytes < recovered.fileBytes) {
+                channel.truncate(recovered.validBytes);
+                channel.force(true);
+            }
+            channel.position(recovered.validBytes);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.nextSequence = recovered.lastSequence + 1;
+        this.lastAppended = recovered.lastSequence;
+        this.durableSequence = recovered.lastSequence;
+        this.active = ByteBuffer.allocate(builder.bufferSize);
+        this.flushing = ByteBuffer.allocate(builder.bufferSize);
+        this.writer = new Thread(this::writeLoop, "payment-ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static PaymentLedger open(Path file) throws IOException {
+        return builder(file).build();
+    }
+
+    // Adds a record to the current batch and returns its sequence number. It is durable once
+    // awaitDurable(sequence) returns.
+    public long append(String method, Money amount, long timestampMillis, boolean success) {
+        return append(0, method, amount, timestampMillis, success ? PAID : FAILED);
+    }
+
+    // A payment about to be attempted; make it durable before calling pay().
+    public long appendIntent(String method, Money amount, long timestampMillis) {
+        return append(0, method, amount, timestampMillis, PENDING);
+    }
+
+    // How the payment recorded by appendIntent() (sequence `intent`) ended.
+    public long appendOutcome(long intent, String method, Money amount, long timestampMillis, boolean success) {
+        if (intent <= 0) {
+            throw new IllegalArgumentException("not an intent sequence: " + intent);
+        }
+        return append(intent, method, amount, timestampMillis, success ? PAID : FAILED);
+    }
+
+    private long append(long intent, String method, Money amount, long timestampMillis, byte outcome) {
+        byte[] name = names.computeIfAbsent(method, PaymentLedger::encodeName);
+        int length = FIXED_SIZE + name.length;
+        lock.lock();
+        try {
+            while (active.remaining() < HEADER_SIZE + length && !closed && failure == null) {
+                hasData.signal();
+                hasRoom.awaitUninterruptibly();
+            }
+            checkOpen();
+            long sequence = nextSequence++;
+            int start = active.position();
+            active.putInt(length).putInt(0)
+                    .putLong(sequence).putLong(timestampMillis).putLong(intent)
+                    .putLong(amount.getMinorUnits()).putInt(amount.currencyBits())
+                    .put(outcome).put((byte) name.length).put(name);
+            crc.reset();
+            crc.update(active.array(), start + HEADER_SIZE, length);
+            active.putInt(start + 4, (int) crc.getValue());
+            lastAppended = sequence;
+            hasData.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until every record up to `sequence` is on disk (or written to the OS, without fsync).
+    public void awaitDurable(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        boolean interrupted = false;
+        synchronized (synced) {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("payment ledger write failed", failure);
+                }
+                try {
+                    synced.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void appendAndSync(String method, Money amount, long timestampMillis, boolean success) {
+        awaitDurable(append(method, amount, timestampMillis, success));
+    }
+
+    // What the scan at open() found, including how much of a torn tail was cut off.
+    public ScanResult getRecovered() {
+        return recovered;
+    }
+
+    // Number of writes (and fsyncs) so far: records / batches is the group-commit factor.
+    public long getBatchCount() {
+        lock.lock();
+        try {
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    // Writes what was appended, then closes the file.
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            hasData.signal();
+            hasRoom.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long last;
+            lock.lock();
+            try {
+                while (active.position() == 0 && !closed) {
+                    hasData.awaitUninterruptibly();
+                }
+                if (active.position() == 0) {
+                    return; // closed and drained
+                }
+                batch = active;
+                active = flushing;
+                flushing = batch;
+                last = lastAppended;
+                hasRoom.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            batch.clear();
+
+            synchronized (synced) {
+                if (failure == null) {
+                    durableSequence = last;
+                }
+                synced.notifyAll();
+            }
+            lock.lock();
+            try {
+                batches++;
+                hasRoom.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (failure != null) {
+                return;
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("payment ledger write failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("payment ledger is closed");
+        }
+    }
+
+    private static byte[] encodeName(String method) {
+        byte[] name = method.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("method name longer than " + MAX_NAME_LENGTH + " bytes: " + method);
+        }
+        return name;
+    }
+
+    // Reads every intact record of `file` in order, stopping at the first torn or corrupt one.
+    // Never modifies the file.
+    public static ScanResult replay(Path file, Consumer<? super Entry> consumer) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return scan(in, consumer);
+        }
+    }
+
+    private static ScanResult scan(FileChannel in, Consumer<? super Entry> consumer) throws IOException {
+        long fileBytes = in.size();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        buffer.flip();
+        in.position(0);
+        CRC32 check = new CRC32();
+        long records = 0;
+        long lastSequence = 0;
+        long validBytes = 0;
+        String problem = null;
+        boolean torn = false;
+        while (true) {
+            if (buffer.remaining() < HEADER_SIZE) {
+                if (!fill(in, buffer)) {
+                    if (buffer.hasRemaining()) {
+                        problem = "torn record header at offset " + validBytes;
+                        torn = true;
+                    }
+                    break;
+                }
+                continue;
+            }
+            int p = buffer.position();
+            int length = buffer.getInt(p);
+            if (length < FIXED_SIZE || length > FIXED_SIZE + MAX_NAME_LENGTH) {
+                problem = "bad record length " + length + " at offset " + validBytes;
+                break;
+            }
+            if (buffer.remaining() < HEADER_SIZE + length) {
+                if (!fill(in, buffer)) {
+                    problem = "torn record at offset " + validBytes;
+                    torn = true;
+                    break;
+                }
+                continue;
+            }
+            check.reset();
+            check.update(buffer.array(), p + HEADER_SIZE, length);
+            if ((int) check.getValue() != buffer.getInt(p + 4)) {
+                problem = "checksum mismatch at offset " + validBytes;
+                break;
+            }
+            long sequence = buffer.getLong(p + 8);
+            if (sequence != lastSequence + 1) {
+                problem = "sequence #" + sequence + " after #" + lastSequence + " at offset " + validBytes;
+                break;
+            }
+            int nameLength = buffer.get(p + HEADER_SIZE + FIXED_SIZE - 1) & 0xff;
+            if (FIXED_SIZE + nameLength != length) {
+                problem = "bad name length at offset " + validBytes;
+                break;
+            }
+            byte outcome = buffer.get(p + 44);
+            long intent = buffer.getLong(p + 24);
+            if (outcome < FAILED || outcome > PENDING || intent < 0 || intent >= sequence
+                    || outcome == PENDING && intent != 0) {
+                problem = "bad outcome at offset " + validBytes;
+                break;
+            }
+            if (consumer != null) {
+                long timestamp = buffer.getLong(p + 16);
+                Money amount = Money.ofBits(buffer.getLong(p + 32), buffer.getInt(p + 40));
+                String method = new String(buffer.array(), p + HEADER_SIZE + FIXED_SIZE, nameLength, StandardCharsets.UTF_8);
+                consumer.accept(new Entry(sequence, timestamp, intent, method, amount, outcome));
+            }
+            buffer.position(p + HEADER_SIZE + length);
+            lastSequence = sequence;
+            records++;
+            validBytes += HEADER_SIZE + length;
+        }
+        return new ScanResult(records, lastSequence, validBytes, fileBytes, problem, torn);
+    }
+
+    private static boolean fill(FileChannel in, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        int read = in.read(buffer);
+        buffer.flip();
+        return read > 0;
+    }
+
+    public static Builder builder(Path file) {
+        return new Builder(file);
+    }
+
+    // Builder
+    public static class Builder {
+        private final Path file;
+        private int bufferSize = 1 << 20;
+        private boolean fsync = true;
+
+        private Builder(Path file) {
+            this.file = file;
+        }
+
+        // Size of each of the two batch buffers; appends wait when the current one is full.
+        public Builder setBufferSize(int bufferSize) {
+            if (bufferSize < HEADER_SIZE + FIXED_SIZE + MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("bufferSize too small: " + bufferSize);
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        // false: batches are written to the OS but not forced to disk (survives a JVM crash only).
+        public Builder setFsync(boolean fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+
+        public PaymentLedger build() throws IOException {
+            return new PaymentLedger(this);
+        }
+    }
+}
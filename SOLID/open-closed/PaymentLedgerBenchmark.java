@@ -0,0 +1,107 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+PaymentLedger throughput with group commit. `threads` payers each append `window` records,
+then wait until the last of them is durable (fsync) before appending more:
+
+    window 1    every payment waits for its own record, like LedgeredPaymentProcessor.process()
+    window 64   a settlement batch that only needs the whole batch durable before reporting
+
+Reports records/sec, records per fsync and the append-to-durable latency; then replays the
+file and checks that every record came back and the totals match. The first line is the
+baseline without group commit: one payer, one fsync per record.
+
+    java PaymentLedgerBenchmark [threads] [window] [records] [dir]
+*/
+class PaymentLedgerBenchmark {
+
+    static final String[] METHODS = {"CreditCardPayment", "PayPalPayment", "UPIPayment"};
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int window = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int records = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        Path dir = args.length > 3 ? Paths.get(args[3]) : Files.createTempDirectory("ledger");
+
+        run(dir, 1, 1, Math.min(records, 2_000));
+        run(dir, threads, 1, records);
+        run(dir, threads, window, records);
+    }
+
+    static void run(Path dir, int threads, int window, int records) throws Exception {
+        Path file = dir.resolve("payments-" + threads + "-" + window + ".ledger");
+        Files.deleteIfExists(file);
+        long[] latencies = new long[records];
+        long[] expectedMinor = new long[METHODS.length];
+        int perThread = records / threads;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long elapsed;
+        long batches;
+        try (PaymentLedger ledger = PaymentLedger.open(file)) {
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                Thread payer = new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int i = id * perThread, end = i + perThread; i < end; ) {
+                            long begin = System.nanoTime();
+                            long last = 0;
+                            int first = i;
+                            for (int w = 0; w < window && i < end; w++, i++) {
+                                Money amount = Money.ofMinor(100 + i % 100_000, "INR");
+                                last = ledger.append(METHODS[i % METHODS.length], amount, System.currentTimeMillis(), i % 50 != 0);
+                            }
+                            ledger.awaitDurable(last);
+                            Arrays.fill(latencies, first, i, System.nanoTime() - begin);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+                payer.setDaemon(true);
+                payer.start();
+            }
+            for (int i = 0; i < perThread * threads; i++) {
+                if (i % 50 != 0) {
+                    expectedMinor[i % METHODS.length] += 100 + i % 100_000;
+                }
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            done.await();
+            elapsed = System.nanoTime() - begin;
+            batches = ledger.getBatchCount();
+        }
+
+        int total = perThread * threads;
+        long[] sorted = Arrays.copyOf(latencies, total);
+        Arrays.sort(sorted);
+        System.out.printf(Locale.ROOT, "%3d threads, window %3d: %,10.0f records/sec  %,8.1f records/fsync  "
+                        + "durable after p50 %,8.1f us  p99 %,8.1f us%n",
+                threads, window, total * 1e9 / elapsed, (double) total / batches,
+                sorted[total / 2] / 1e3, sorted[(int) (total * 0.99)] / 1e3);
+
+        long[] replayedMinor = new long[METHODS.length];
+        PaymentLedger.ScanResult result = PaymentLedger.replay(file, entry -> {
+            if (entry.isPaid()) {
+                replayedMinor[Arrays.asList(METHODS).indexOf(entry.method)] += entry.amount.getMinorUnits();
+            }
+        });
+        if (!result.isClean() || result.records != total || !Arrays.equals(expectedMinor, replayedMinor)) {
+            System.out.println("replay mismatch: " + result);
+            System.exit(1);
+        }
+        System.out.println("    replay ok: " + result);
+        Files.delete(file);
+        TimeUnit.MILLISECONDS.sleep(100);
+    }
+}
@@ -0,0 +1,87 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+Replay / verify tool for PaymentLedger files.
+
+    java PaymentLedgerTool verify <ledger>        checksums and sequence; exit 1 if anything is wrong
+    java PaymentLedgerTool totals <ledger>        rebuilds paid totals and counts per payment method,
+                                                  and lists payments still in doubt
+    java PaymentLedgerTool dump <ledger> [limit]  prints the records
+
+verify doesn't change the file. A torn tail it reports is what PaymentLedger.open() would cut off;
+any other problem makes open() refuse the file until it has been repaired by hand.
+A payment is in doubt when its intent (PENDING) record has no outcome: the process died, or the
+ledger failed, after pay() may have charged it. Check those with the provider before retrying.
+*/
+class PaymentLedgerTool {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: PaymentLedgerTool verify|totals|dump <ledger> [limit]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[1]);
+        PaymentLedger.ScanResult result;
+        switch (args[0]) {
+            case "verify":
+                result = PaymentLedger.replay(file, entry -> { });
+                break;
+            case "totals":
+                result = printTotals(file);
+                break;
+            case "dump":
+                long limit = args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+                result = PaymentLedger.replay(file, entry -> {
+                    if (entry.sequence <= limit) {
+                        System.out.println(entry);
+                    }
+                });
+                break;
+            default:
+                System.out.println("unknown command: " + args[0]);
+                System.exit(2);
+                return;
+        }
+        System.out.println(file + ": " + result);
+        if (!result.isClean()) {
+            System.exit(1);
+        }
+    }
+
+    static PaymentLedger.ScanResult printTotals(Path file) throws Exception {
+        Map<String, Money> paid = new TreeMap<>();
+        Map<String, long[]> counts = new TreeMap<>(); // {paid, failed, in doubt}
+        Map<Long, PaymentLedger.Entry> open = new LinkedHashMap<>(); // intents without an outcome yet
+        PaymentLedger.ScanResult result = PaymentLedger.replay(file, entry -> {
+            if (entry.isPending()) {
+                open.put(entry.sequence, entry);
+                return;
+            }
+            open.remove(entry.intent);
+            String key = entry.method + " " + entry.amount.getCurrencyCode();
+            long[] count = counts.computeIfAbsent(key, k -> new long[3]);
+            if (entry.isPaid()) {
+                count[0]++;
+                paid.merge(key, entry.amount, Money::plus);
+            } else {
+                count[1]++;
+            }
+        });
+        for (PaymentLedger.Entry intent : open.values()) {
+            counts.computeIfAbsent(intent.method + " " + intent.amount.getCurrencyCode(), k -> new long[3])[2]++;
+        }
+        for (Map.Entry<String, long[]> e : counts.entrySet()) {
+            Money total = paid.get(e.getKey());
+            System.out.printf("%-28s paid %,10d  failed %,8d  in doubt %,6d  total %s%n", e.getKey(),
+                    e.getValue()[0], e.getValue()[1], e.getValue()[2], total == null ? "-" : total);
+        }
+        for (PaymentLedger.Entry intent : open.values()) {
+            System.out.println("in doubt: " + intent);
+        }
+        return result;
+    }
+}
@@ -1,4 +1,10 @@
 // 1️⃣ Common interface for all payment types
 interface PaymentMethod {
     void pay(double amount);
-}
\ No newline at end of file
+
+    // Exact amount. Implementations written before Money keep working through the double
+    // overload; override this to settle without rounding.
+    default void pay(Money amount) {
+        pay(amount.toDouble());
+    }
+}
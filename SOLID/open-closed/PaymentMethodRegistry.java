@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/*
+Finds PaymentMethod implementations at startup and dispatches to them by a dense int id.
+
+load() asks ServiceLoader for every class listed in META-INF/services/PaymentMethod on the
+class path, so a new payment method is a new class plus one line in that file - nothing in
+here or in PaymentProcessor changes (Open/Closed again, but across jars). ServiceLoader needs
+the implementation to be public with a public no-arg constructor.
+
+Each method is registered under its simple class name and gets the next id (0, 1, 2, ...).
+Callers resolve the name to an id once (idOf), then process(id, amount) is an array index
+plus one interface call: no string matching and no instanceof chain, and the cost doesn't
+grow with the number of registered methods.
+
+Registration copies the array (rare, at startup); dispatch reads it without locking.
+*/
+final class PaymentMethodRegistry {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile PaymentMethod[] methods = new PaymentMethod[0];
+    private volatile String[] names = new String[0];
+
+    // Every PaymentMethod listed in META-INF/services/PaymentMethod.
+    public static PaymentMethodRegistry load() {
+        return load(Thread.currentThread().getContextClassLoader());
+    }
+
+    public static PaymentMethodRegistry load(ClassLoader loader) {
+        PaymentMethodRegistry registry = new PaymentMethodRegistry();
+        for (PaymentMethod method : ServiceLoader.load(PaymentMethod.class, loader)) {
+            registry.register(method.getClass().getSimpleName(), method);
+        }
+        return registry;
+    }
+
+    // Returns the new method's id.
+    public synchronized int register(String name, PaymentMethod method) {
+        if (name == null || method == null) {
+            throw new IllegalArgumentException("name and method are required");
+        }
+        if (ids.containsKey(name)) {
+            throw new IllegalArgumentException("payment method already registered: " + name);
+        }
+        int id = methods.length;
+        PaymentMethod[] grownMethods = Arrays.copyOf(methods, id + 1);
+        String[] grownNames = Arrays.copyOf(names, id + 1);
+        grownMethods[id] = method;
+        grownNames[id] = name;
+        names = grownNames;
+        methods = grownMethods;
+        ids.put(name, id);
+        return id;
+    }
+
+    // The id of `name`, or -1 if no such method is registered.
+    public synchronized int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public PaymentMethod get(int id) {
+        PaymentMethod[] current = methods;
+        if (id < 0 || id >= current.length) {
+            throw new IllegalArgumentException("unknown payment method id: " + id);
+        }
+        return current[id];
+    }
+
+    public String nameOf(int id) {
+        String[] current = names;
+        if (id < 0 || id >= current.length) {
+            throw new IllegalArgumentException("unknown payment method id: " + id);
+        }
+        return current[id];
+    }
+
+    public int size() {
+        return methods.length;
+    }
+
+    // Names in id order.
+    public List<String> names() {
+        return new ArrayList<>(Arrays.asList(names));
+    }
+
+    public void process(int id, double amount) {
+        get(id).pay(amount);
+    }
+
+    public void process(int id, Money amount) {
+        get(id).pay(amount);
+    }
+
+    // Through a PaymentProcessor, so its bulkheads apply.
+    public void process(PaymentProcessor processor, int id, Money amount) {
+        processor.process(get(id), amount);
+    }
+}
@@ -1,6 +1,386 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 // 3️⃣ PaymentProcessor — open for extension, closed for modification
+/*
+process() settles one payment on the caller's thread.
+
+processAll() settles a batch in parallel, in one of two execution modes:
+
+PLATFORM_POOL (default): each PaymentMethod implementation (CreditCardPayment, PayPalPayment,
+UPIPayment, or any new one) gets its own worker pool, created the first time that class is
+seen - so adding a payment method still needs no change here. A slow provider only backs up
+its own pool. At most setQueueCapacity() payments per method wait for a worker; beyond that
+processAll()'s thread runs the payment itself, which throttles the producer instead of
+buffering millions of pending payments. A payment chained behind the payer's previous one
+(preservePayerOrder) is always queued on its own method's pool, never run on whichever
+thread finished the previous payment.
+
+VIRTUAL_THREADS: every payment gets its own virtual thread (Java 21+). pay() usually blocks
+on a remote gateway, and a blocked virtual thread costs a few hundred bytes instead of a
+whole OS thread, so thousands of payments can wait on the network at once. On older JDKs
+(this repo targets 17) it falls back to the bounded per-method pools of PLATFORM_POOL -
+never to a thread per payment, which a large batch would turn into millions of OS threads
+(see usesVirtualThreads()).
+
+In both modes setMaxConcurrentPerMethod() adds a bulkhead: a Semaphore per payment method
+class that caps how many pay() calls of that class run at the same time, so one slow
+provider (say PayPalPayment) can't hold every thread. Payments over the limit wait for a
+permit; other methods are not affected.
+
+Idempotency keys, a write-ahead ledger and failover are decorators around this class
+(IdempotentPaymentProcessor, LedgeredPaymentProcessor, FailoverPaymentRouter) - it stays a
+dispatcher.
+
+With preservePayerOrder, payments of the same payer are chained: each one starts only after
+the payer's previous one finished (in submission order), even across payment methods.
+Different payers still run in parallel.
+
+shutdown() takes no new batches but lets every submitted payment, chained ones included,
+finish before the pools stop. A payment that can't be scheduled at all completes its future
+exceptionally (RejectedExecutionException) rather than being dropped.
+*/
 class PaymentProcessor {
+
+    enum ExecutionMode { PLATFORM_POOL, VIRTUAL_THREADS }
+
+    private final ExecutionMode mode;
+    private final int workersPerMethod;
+    private final int queueCapacity;
+    private final int maxConcurrentPerMethod;
+    private final ConcurrentHashMap<Class<?>, ThreadPoolExecutor> pools = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Semaphore> bulkheads = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Semaphore> queueSlots = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger(); // submitted payments (and batches) not finished yet
+    private final AtomicBoolean poolsStopped = new AtomicBoolean();
+    private final ExecutorService perTaskExecutor; // VIRTUAL_THREADS on Java 21+ only
+    private final boolean virtualThreads;
+    private volatile boolean shutdown;
+
+    public PaymentProcessor() {
+        this(builder());
+    }
+
+    public PaymentProcessor(int workersPerMethod, int queueCapacity) {
+        this(builder().setWorkersPerMethod(workersPerMethod).setQueueCapacity(queueCapacity));
+    }
+
+    private PaymentProcessor(Builder builder) {
+        this.mode = builder.mode;
+        this.workersPerMethod = builder.workersPerMethod;
+        this.queueCapacity = builder.queueCapacity;
+        this.maxConcurrentPerMethod = builder.maxConcurrentPerMethod;
+        if (mode == ExecutionMode.VIRTUAL_THREADS) {
+            this.perTaskExecutor = newVirtualThreadPerTaskExecutor(); // null: use the per-method pools
+            this.virtualThreads = perTaskExecutor != null;
+        } else {
+            this.virtualThreads = false;
+            this.perTaskExecutor = null;
+        }
+    }
+
     public void process(PaymentMethod method, double amount) {
-        method.pay(amount);  // Polymorphism at work
+        Semaphore bulkhead = bulkheadFor(method);
+        if (bulkhead == null) {
+            method.pay(amount);  // Polymorphism at work
+            return;
+        }
+        guarded(bulkhead, () -> method.pay(amount));
+    }
+
+    public void process(PaymentMethod method, Money amount) {
+        Semaphore bulkhead = bulkheadFor(method);
+        if (bulkhead == null) {
+            method.pay(amount);
+            return;
+        }
+        guarded(bulkhead, () -> method.pay(amount));
+    }
+
+    // process(), reporting the pay() call to `observer`. Not called at all if pay() never ran.
+    public void process(PaymentMethod method, Money amount, PayObserver observer) {
+        Runnable payment = () -> observed(() -> method.pay(amount), observer);
+        Semaphore bulkhead = bulkheadFor(method);
+        if (bulkhead == null) {
+            payment.run();
+        } else {
+            guarded(bulkhead, payment);
+        }
+    }
+
+    private static void observed(Runnable payment, PayObserver observer) {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            payment.run();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            observer.onPay(System.nanoTime() - start, failure);
+        }
+    }
+
+    // Runs one pay() call inside the method's bulkhead.
+    private static void guarded(Semaphore bulkhead, Runnable payment) {
+        bulkhead.acquireUninterruptibly();
+        try {
+            payment.run();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public List<CompletableFuture<PaymentResult>> processAll(Collection<PaymentRequest> requests) {
+        return processAll(requests, false);
+    }
+
+    // One future per request, in the order of `requests`.
+    public List<CompletableFuture<PaymentResult>> processAll(Collection<PaymentRequest> requests,
+                                                             boolean preservePayerOrder) {
+        pending.incrementAndGet(); // holds off shutdown() stopping the pools while this batch is submitted
+        try {
+            if (shutdown) {
+                throw new IllegalStateException("PaymentProcessor is shut down");
+            }
+            List<CompletableFuture<PaymentResult>> results = new ArrayList<>(requests.size());
+            Map<String, CompletableFuture<PaymentResult>> lastByPayer = preservePayerOrder ? new HashMap<>() : null;
+            for (PaymentRequest request : requests) {
+                CompletableFuture<PaymentResult> previous = preservePayerOrder ? lastByPayer.get(request.getPayer()) : null;
+                CompletableFuture<PaymentResult> result;
+                if (previous == null) {
+                    result = submitOrRun(request);
+                } else {
+                    // thenCompose runs on the thread that finished `previous`; it only enqueues
+                    result = previous.handle((r, e) -> request).thenCompose(this::enqueue);
+                }
+                pending.incrementAndGet();
+                result.whenComplete((r, e) -> finished());
+                if (preservePayerOrder) {
+                    lastByPayer.put(request.getPayer(), result);
+                }
+                results.add(result);
+            }
+            return results;
+        } finally {
+            finished();
+        }
+    }
+
+    // Told how the pay() call itself went: how long it took and what it threw (null if it
+    // returned). Waiting for the bulkhead, and whatever a decorator does around process(),
+    // is not part of it - FailoverPaymentRouter judges the provider by this alone.
+    interface PayObserver {
+        void onPay(long nanos, Throwable failure);
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return mode;
+    }
+
+    // false in VIRTUAL_THREADS mode when the JDK has no virtual threads (before Java 21); the
+    // per-method pools (setWorkersPerMethod/setQueueCapacity) are used instead.
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // Takes no new batches; the pools stop once every payment already submitted is done.
+    public void shutdown() {
+        shutdown = true;
+        if (pending.get() == 0) {
+            stopPools();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (poolsStopped) {
+            while (!poolsStopped.get()) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(poolsStopped, left);
+            }
+        }
+        for (ThreadPoolExecutor pool : pools.values()) {
+            if (!pool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return perTaskExecutor == null
+                || perTaskExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    // PLATFORM_POOL: queued if the method's queue has room, else run right here (throttling the caller).
+    private CompletableFuture<PaymentResult> submitOrRun(PaymentRequest request) {
+        Semaphore slots = queueSlotsFor(request.getMethod());
+        if (slots == null) {
+            return enqueue(request);
+        }
+        if (!slots.tryAcquire()) {
+            return CompletableFuture.completedFuture(settle(request));
+        }
+        CompletableFuture<PaymentResult> result = enqueue(request);
+        result.whenComplete((r, e) -> slots.release());
+        return result;
+    }
+
+    // Queues the payment on its method's executor; never runs it on the calling thread.
+    private CompletableFuture<PaymentResult> enqueue(PaymentRequest request) {
+        try {
+            return CompletableFuture.supplyAsync(() -> settle(request), executorFor(request.getMethod()));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void finished() {
+        if (pending.decrementAndGet() == 0 && shutdown) {
+            stopPools();
+        }
+    }
+
+    private void stopPools() {
+        if (!poolsStopped.compareAndSet(false, true)) {
+            return;
+        }
+        for (ThreadPoolExecutor pool : pools.values()) {
+            pool.shutdown();
+        }
+        if (perTaskExecutor != null) {
+            perTaskExecutor.shutdown();
+        }
+        synchronized (poolsStopped) {
+            poolsStopped.notifyAll();
+        }
+    }
+
+    private PaymentResult settle(PaymentRequest request) {
+        try {
+            process(request.getMethod(), request.getAmount());
+            return PaymentResult.success(request);
+        } catch (RuntimeException e) {
+            return PaymentResult.failure(request, e);
+        }
+    }
+
+    private Semaphore bulkheadFor(PaymentMethod method) {
+        if (maxConcurrentPerMethod == 0) {
+            return null;
+        }
+        Semaphore bulkhead = bulkheads.get(method.getClass());
+        return bulkhead != null ? bulkhead
+                : bulkheads.computeIfAbsent(method.getClass(), c -> new Semaphore(maxConcurrentPerMethod));
+    }
+
+    private Semaphore queueSlotsFor(PaymentMethod method) {
+        if (perTaskExecutor != null) {
+            return null;
+        }
+        Semaphore slots = queueSlots.get(method.getClass());
+        return slots != null ? slots : queueSlots.computeIfAbsent(method.getClass(), c -> new Semaphore(queueCapacity));
+    }
+
+    private ExecutorService executorFor(PaymentMethod method) {
+        if (perTaskExecutor != null) {
+            return perTaskExecutor;
+        }
+        ThreadPoolExecutor pool = pools.get(method.getClass());
+        return pool != null ? pool : pools.computeIfAbsent(method.getClass(), this::newPool);
+    }
+
+    private ThreadPoolExecutor newPool(Class<?> methodClass) {
+        // Unbounded queue: processAll() bounds what it queues with queueSlots; chained payments
+        // are already held by their batch. Rejected only after shutdown (AbortPolicy).
+        return new ThreadPoolExecutor(workersPerMethod, workersPerMethod, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                daemonThreads("payments-" + methodClass.getSimpleName() + "-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is Java 21+; looked up reflectively so this
+    // file still compiles and runs on older JDKs. null when not available.
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Builder
+    public static class Builder {
+        private ExecutionMode mode = ExecutionMode.PLATFORM_POOL;
+        private int workersPerMethod = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = 1024;
+        private int maxConcurrentPerMethod = 0;
+
+        private Builder() {
+        }
+
+        public Builder setExecutionMode(ExecutionMode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        // PLATFORM_POOL: threads in each payment method's pool.
+        public Builder setWorkersPerMethod(int workersPerMethod) {
+            if (workersPerMethod <= 0) {
+                throw new IllegalArgumentException("workersPerMethod must be positive: " + workersPerMethod);
+            }
+            this.workersPerMethod = workersPerMethod;
+            return this;
+        }
+
+        // PLATFORM_POOL: queued payments per payment method before processAll() runs them itself.
+        public Builder setQueueCapacity(int queueCapacity) {
+            if (queueCapacity <= 0) {
+                throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        // Bulkhead: at most this many concurrent pay() calls per payment method class. 0 (default) = no limit.
+        public Builder setMaxConcurrentPerMethod(int maxConcurrentPerMethod) {
+            if (maxConcurrentPerMethod < 0) {
+                throw new IllegalArgumentException("maxConcurrentPerMethod must not be negative: " + maxConcurrentPerMethod);
+            }
+            this.maxConcurrentPerMethod = maxConcurrentPerMethod;
+            return this;
+        }
+
+        public PaymentProcessor build() {
+            return new PaymentProcessor(this);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+// One payment in a batch: who pays, how, and how much.
+final class PaymentRequest {
+    private final String payer;
+    private final PaymentMethod method;
+    private final Money amount;
+
+    PaymentRequest(String payer, PaymentMethod method, Money amount) {
+        if (payer == null || method == null || amount == null) {
+            throw new IllegalArgumentException("payer, method and amount are required");
+        }
+        this.payer = payer;
+        this.method = method;
+        this.amount = amount;
+    }
+
+    public String getPayer() {
+        return payer;
+    }
+
+    public PaymentMethod getMethod() {
+        return method;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return payer + " pays " + amount + " via " + method.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,42 @@
+// Outcome of one PaymentRequest. A failed pay() is a result, not an exception, so one bad
+// payment doesn't fail the whole batch.
+final class PaymentResult {
+    private final PaymentRequest request;
+    private final Throwable failure;
+
+    private PaymentResult(PaymentRequest request, Throwable failure) {
+        this.request = request;
+        this.failure = failure;
+    }
+
+    static PaymentResult success(PaymentRequest request) {
+        return new PaymentResult(request, null);
+    }
+
+    static PaymentResult failure(PaymentRequest request, Throwable failure) {
+        return new PaymentResult(request, failure);
+    }
+
+    // The same outcome, reported for another request (e.g. a retry with the same idempotency key).
+    PaymentResult withRequest(PaymentRequest other) {
+        return other == request ? this : new PaymentResult(other, failure);
+    }
+
+    public PaymentRequest getRequest() {
+        return request;
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    // null when the payment succeeded.
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return (isSuccess() ? "OK     " : "FAILED ") + request + (isSuccess() ? "" : " (" + failure + ")");
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+Local stand-in for a remote payment gateway: charge() blocks for `latency ± jitter` (uniform),
+the way a real pay() blocks on a network round trip, and fails with probability `failureRate`.
+
+Latency and failure rate can be changed while traffic is running, to inject a slowdown or an
+outage into one provider.
+*/
+final class SimulatedGateway {
+    private final String name;
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+    private volatile double failureRate;
+
+    SimulatedGateway(String name, long latency, long jitter, TimeUnit unit) {
+        this.name = name;
+        setLatency(latency, jitter, unit);
+    }
+
+    public void charge(double amount) {
+        long jitter = jitterNanos;
+        long delay = latencyNanos + (jitter == 0 ? 0 : ThreadLocalRandom.current().nextLong(-jitter, jitter + 1));
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay / 1_000_000, (int) (delay % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(name + ": interrupted while charging " + amount, e);
+            }
+        }
+        double rate = failureRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            throw new IllegalStateException(name + ": declined " + amount);
+        }
+    }
+
+    public SimulatedGateway setLatency(long latency, long jitter, TimeUnit unit) {
+        if (latency < 0 || jitter < 0) {
+            throw new IllegalArgumentException("latency and jitter must not be negative");
+        }
+        this.latencyNanos = unit.toNanos(latency);
+        this.jitterNanos = Math.min(unit.toNanos(jitter), latencyNanos);
+        return this;
+    }
+
+    public SimulatedGateway setFailureRate(double failureRate) {
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failureRate must be in [0, 1]: " + failureRate);
+        }
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -1,6 +1,11 @@
-class UPIPayment implements PaymentMethod {
+public class UPIPayment implements PaymentMethod {
     @Override
     public void pay(double amount) {
         System.out.println("Paid ₹" + amount + " using UPI.");
     }
+
+    @Override
+    public void pay(Money amount) {
+        System.out.println(amount.appendTo(Money.formatBuffer().append("Paid ")).append(" using UPI."));
+    }
 }
\ No newline at end of file
@@ -1,12 +1,48 @@
-class Employee {
+import java.io.Serializable;
+
+/*
+An employee's data, with a version that starts at 1 and goes up by one with each update, so
+"has this employee changed since I last looked" is a number comparison (see EmployeeChangeLog
+and the report cache in EmployeeReportGenerator).
+
+The id is the employee's row in whatever directory owns it - EmployeeStore.get(id) returns
+employees with their store id, and IncrementalReportExporter writes employee N on line N. It
+is given by that owner, never made up here: an Employee created with just a name and a
+position has no id (NO_ID) until a directory gives it one.
+
+Updates aren't synchronized: change employees from one thread, not while an export runs.
+*/
+class Employee implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final int NO_ID = -1;
+
+    private final int id;
     private String name;
     private String position;
+    private long version = 1;
+    private transient EmployeeChangeLog changeLog;
 
     public Employee(String name, String position) {
+        this.id = NO_ID;
+        this.name = name;
+        this.position = position;
+    }
+
+    public Employee(int id, String name, String position) {
+        if (id < 0) {
+            throw new IllegalArgumentException("id must not be negative: " + id);
+        }
+        this.id = id;
         this.name = name;
         this.position = position;
     }
 
+    // NO_ID if no directory has given this employee an id.
+    public int getId() {
+        return id;
+    }
+
     public String getName(){
         return name;
     }
@@ -14,4 +50,42 @@ class Employee {
     public String getPosition(){
         return position;
     }
-}
\ No newline at end of file
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setName(String name) {
+        if (!name.equals(this.name)) {
+            this.name = name;
+            changed();
+        }
+    }
+
+    public void setPosition(String position) {
+        if (!position.equals(this.position)) {
+            this.position = position;
+            changed();
+        }
+    }
+
+    // Called by EmployeeChangeLog.track(). An employee records its changes in one log; a
+    // second one would silently take its changes away from the first.
+    void setChangeLog(EmployeeChangeLog changeLog) {
+        checkChangeLog(changeLog);
+        this.changeLog = changeLog;
+    }
+
+    void checkChangeLog(EmployeeChangeLog changeLog) {
+        if (this.changeLog != null && this.changeLog != changeLog) {
+            throw new IllegalStateException("employee " + name + " is already tracked by another change log");
+        }
+    }
+
+    private void changed() {
+        version++;
+        if (changeLog != null) {
+            changeLog.record(this);
+        }
+    }
+}
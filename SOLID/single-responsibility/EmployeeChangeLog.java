@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/*
+Append-only log of employee updates. track() an employee and every setName()/setPosition()
+that changes something appends it here. An employee can be tracked by one log only; tracking
+it with a second throws IllegalStateException.
+
+Positions in the log are marks: remember mark(), and later changedSince(mark) returns the
+employees updated after it - each once, however many times it changed - in the cost of the
+changes, not of the whole directory. discardBefore() drops entries every reader is past.
+
+Not thread-safe, like Employee's setters.
+*/
+class EmployeeChangeLog {
+    private Employee[] entries = new Employee[64];
+    private int size;
+    private long discarded; // mark of entries[0]
+
+    public void track(Employee employee) {
+        employee.setChangeLog(this);
+    }
+
+    // All or nothing: if one of them is tracked by another log, none is tracked by this one.
+    public void track(Iterable<? extends Employee> employees) {
+        for (Employee employee : employees) {
+            employee.checkChangeLog(this);
+        }
+        for (Employee employee : employees) {
+            employee.setChangeLog(this);
+        }
+    }
+
+    // Called by Employee when it changes.
+    void record(Employee employee) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size++] = employee;
+    }
+
+    public long mark() {
+        return discarded + size;
+    }
+
+    // Employees changed after `mark`, in the order of their first change since then.
+    public List<Employee> changedSince(long mark) {
+        if (mark < discarded || mark > mark()) {
+            throw new IllegalArgumentException("mark " + mark + " is outside the log [" + discarded + ", " + mark() + "]");
+        }
+        List<Employee> changed = new ArrayList<>();
+        // by identity, not id: employees without an id (or two claiming one) are still told apart
+        Set<Employee> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = (int) (mark - discarded); i < size; i++) {
+            if (seen.add(entries[i])) {
+                changed.add(entries[i]);
+            }
+        }
+        return changed;
+    }
+
+    // Forgets the entries before `mark`; changedSince() only accepts later marks after this.
+    public void discardBefore(long mark) {
+        int drop = (int) Math.min(Math.max(mark - discarded, 0), size);
+        System.arraycopy(entries, drop, entries, 0, size - drop);
+        Arrays.fill(entries, size - drop, size, null);
+        size -= drop;
+        discarded += drop;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,467 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Binary format for Employee records: storing and moving employees, which is a separate job
+from reporting them.
+
+    header:  "EMPL"  version (1 byte)  flags (1 byte)
+    record:  varint nameLength, name (UTF-8)
+             position:  flags & POSITION_DICTIONARY == 0:  varint length, UTF-8
+                        otherwise:  varint 0, then varint length, UTF-8  - a new position, it gets the next index
+                                    varint k > 0                          - the position with index k - 1
+    records follow one another up to the end of the data.
+
+Varints are 7 bits per byte, low bits first, high bit set when more bytes follow. With the
+position dictionary a record for a 15-character name is 17 bytes.
+
+Writer encodes straight into one reused heap ByteBuffer and writes it to a channel when full.
+Cursor walks records in a ByteBuffer - a memory-mapped file from map(), or bytes in memory -
+without allocating per record: names and positions are read as slices of the buffer
+(appendName(), nameEquals(), appendPosition(), positionEquals()). position() decodes one
+String per distinct position - from the dictionary, or without one from a small cache keyed
+by the position's bytes. Neither is thread-safe.
+*/
+final class EmployeeCodec {
+
+    static final int MAGIC = 0x454D504C; // "EMPL"
+    static final byte VERSION = 1;
+    static final int POSITION_DICTIONARY = 1;
+    static final int HEADER_SIZE = 6;
+
+    private EmployeeCodec() {
+    }
+
+    public static Writer writer(WritableByteChannel channel, boolean positionDictionary) {
+        return new Writer(channel, positionDictionary, 256 * 1024, false);
+    }
+
+    public static Writer writer(Path file, boolean positionDictionary) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new Writer(channel, positionDictionary, 256 * 1024, true);
+    }
+
+    // Maps the whole file (up to 2 GB) read-only.
+    public static Cursor map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GB (" + size + " bytes)");
+            }
+            return new Cursor(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public static Cursor cursor(ByteBuffer data) throws IOException {
+        return new Cursor(data.slice());
+    }
+
+    // Encodes `employees` into one buffer, ready to read.
+    public static ByteBuffer encode(Iterable<Employee> employees, boolean positionDictionary) {
+        ByteBufferChannel out = new ByteBufferChannel();
+        try (Writer writer = new Writer(out, positionDictionary, 64 * 1024, false)) {
+            for (Employee employee : employees) {
+                writer.write(employee);
+            }
+        }
+        return out.buffer.flip();
+    }
+
+    public static List<Employee> decode(ByteBuffer data) throws IOException {
+        List<Employee> employees = new ArrayList<>();
+        Cursor cursor = cursor(data);
+        while (cursor.next()) {
+            employees.add(cursor.toEmployee());
+        }
+        return employees;
+    }
+
+    public static List<Employee> readAll(Path file) throws IOException {
+        List<Employee> employees = new ArrayList<>();
+        Cursor cursor = map(file);
+        while (cursor.next()) {
+            employees.add(cursor.toEmployee());
+        }
+        return employees;
+    }
+
+    public static final class Writer implements Closeable {
+        private final WritableByteChannel channel;
+        private final boolean closeChannel;
+        private final Map<String, Integer> dictionary; // null: positions written in full
+        private ByteBuffer buffer;
+        private long count;
+
+        Writer(WritableByteChannel channel, boolean positionDictionary, int bufferSize, boolean closeChannel) {
+            if (bufferSize < 64) {
+                throw new IllegalArgumentException("bufferSize too small: " + bufferSize);
+            }
+            this.channel = channel;
+            this.closeChannel = closeChannel;
+            this.dictionary = positionDictionary ? new HashMap<>() : null;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+            buffer.putInt(MAGIC).put(VERSION).put((byte) (positionDictionary ? POSITION_DICTIONARY : 0));
+        }
+
+        public void write(Employee employee) {
+            write(employee.getName(), employee.getPosition());
+        }
+
+        public void write(String name, String position) {
+            if (name == null || position == null) {
+                throw new IllegalArgumentException("name and position are required");
+            }
+            ensure(10 + 3L * (name.length() + position.length())); // worst case: 3 bytes per char
+            putString(name);
+            if (dictionary == null) {
+                putString(position);
+            } else {
+                Integer index = dictionary.get(position);
+                if (index == null) {
+                    dictionary.put(position, dictionary.size());
+                    putVarint(0);
+                    putString(position);
+                } else {
+                    putVarint(index + 1);
+                }
+            }
+            count++;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void flush() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("employee output failed", e);
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+            if (closeChannel) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("employee output failed", e);
+                }
+            }
+        }
+
+        private void ensure(long bytes) {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, bytes));
+                }
+            }
+        }
+
+        private void putVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                buffer.put((byte) (value | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        // UTF-8 by hand, so no byte[] per string; unpaired surrogates become '?' like String.getBytes().
+        private void putString(String s) {
+            int length = s.length();
+            int utf8 = length;
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    continue;
+                }
+                if (c < 0x800) {
+                    utf8 += 1;
+                } else if (!Character.isSurrogate(c)) {
+                    utf8 += 2;
+                } else if (pairAt(s, i)) {
+                    utf8 += 2; // two chars, four bytes
+                    i++;
+                }
+            }
+            putVarint(utf8);
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+                } else if (!Character.isSurrogate(c)) {
+                    buffer.put((byte) (0xe0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+                } else if (pairAt(s, i)) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buffer.put((byte) (0xf0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3f))
+                            .put((byte) (0x80 | cp >> 6 & 0x3f)).put((byte) (0x80 | cp & 0x3f));
+                } else {
+                    buffer.put((byte) '?');
+                }
+            }
+        }
+
+        private static boolean pairAt(String s, int i) {
+            return Character.isHighSurrogate(s.charAt(i)) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1));
+        }
+    }
+
+    public static final class Cursor {
+        private static final int POSITION_CACHE = 64; // power of two
+
+        private final ByteBuffer data;
+        private final boolean positionDictionary;
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] dictionarySlices = new int[64]; // offset, length of each dictionary position
+        private final byte[][] cachedBytes = new byte[POSITION_CACHE][];
+        private final String[] cachedPositions = new String[POSITION_CACHE];
+        private byte[] scratch = new byte[64];
+        private int nameOffset;
+        private int nameLength;
+        private int positionOffset;
+        private int positionLength;
+        private String position; // null until position() decodes it
+        private int positionIndex = -1;
+
+        private Cursor(ByteBuffer data) throws IOException {
+            this.data = data;
+            if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+                throw new IOException("not an employee file");
+            }
+            int version = data.get(4);
+            if (version != VERSION) {
+                throw new IOException("unsupported employee file version " + version);
+            }
+            int flags = data.get(5);
+            if ((flags & ~POSITION_DICTIONARY) != 0) {
+                throw new IOException("unknown employee file flags " + Integer.toHexString(flags));
+            }
+            this.positionDictionary = flags == POSITION_DICTIONARY;
+            data.position(HEADER_SIZE);
+        }
+
+        // Moves to the next record; false at the end of the data.
+        public boolean next() throws IOException {
+            if (!data.hasRemaining()) {
+                return false;
+            }
+            try {
+                nameLength = varint();
+                nameOffset = data.position();
+                skip(nameLength);
+                if (!positionDictionary) {
+                    slicePosition(varint());
+                    position = null;
+                } else {
+                    int code = varint();
+                    if (code == 0) {
+                        positionIndex = dictionary.size();
+                        slicePosition(varint());
+                        position = new String(bytes(positionOffset, positionLength), 0, positionLength,
+                                StandardCharsets.UTF_8);
+                        dictionary.add(position);
+                        if (dictionarySlices.length < 2 * dictionary.size()) {
+                            dictionarySlices = Arrays.copyOf(dictionarySlices, dictionarySlices.length * 2);
+                        }
+                        dictionarySlices[2 * positionIndex] = positionOffset;
+                        dictionarySlices[2 * positionIndex + 1] = positionLength;
+                    } else if (code <= dictionary.size()) {
+                        positionIndex = code - 1;
+                        position = dictionary.get(positionIndex);
+                        positionOffset = dictionarySlices[2 * positionIndex];
+                        positionLength = dictionarySlices[2 * positionIndex + 1];
+                    } else {
+                        throw new IOException("bad position reference " + code + " at " + nameOffset);
+                    }
+                }
+                return true;
+            } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+                throw new IOException("truncated employee record at " + nameOffset, e);
+            }
+        }
+
+        public String name() {
+            return new String(bytes(nameOffset, nameLength), 0, nameLength, StandardCharsets.UTF_8);
+        }
+
+        // Decodes the current name into `out`, allocation-free for ASCII and the BMP.
+        public StringBuilder appendName(StringBuilder out) {
+            return appendUtf8(out, nameOffset, nameLength);
+        }
+
+        // Compares the current name's bytes with `utf8`, without decoding.
+        public boolean nameEquals(byte[] utf8) {
+            return sliceEquals(nameOffset, nameLength, utf8);
+        }
+
+        public int nameLength() {
+            return nameLength;
+        }
+
+        // Shared between records with the same position: one String per distinct position.
+        public String position() {
+            if (position == null) {
+                position = cachedPosition();
+            }
+            return position;
+        }
+
+        // Decodes the current position into `out`, allocation-free for ASCII and the BMP.
+        public StringBuilder appendPosition(StringBuilder out) {
+            return appendUtf8(out, positionOffset, positionLength);
+        }
+
+        // Compares the current position's bytes with `utf8`, without decoding.
+        public boolean positionEquals(byte[] utf8) {
+            return sliceEquals(positionOffset, positionLength, utf8);
+        }
+
+        // The position's index in the file's dictionary, or -1 without one.
+        public int positionIndex() {
+            return positionIndex;
+        }
+
+        // Without an id: the encoding doesn't carry one, the directory it is loaded into assigns it.
+        public Employee toEmployee() {
+            return new Employee(name(), position());
+        }
+
+        private void slicePosition(int length) {
+            positionLength = length;
+            positionOffset = data.position();
+            skip(length);
+        }
+
+        // Without the dictionary: looks the position up by its bytes in a direct-mapped cache,
+        // so a file of repeated positions decodes each of them about once.
+        private String cachedPosition() {
+            int hash = 0;
+            for (int i = positionOffset, end = positionOffset + positionLength; i < end; i++) {
+                hash = 31 * hash + data.get(i);
+            }
+            int slot = (hash ^ hash >>> 16) & (POSITION_CACHE - 1);
+            byte[] cached = cachedBytes[slot];
+            if (cached == null || !sliceEquals(positionOffset, positionLength, cached)) {
+                cached = new byte[positionLength];
+                data.get(positionOffset, cached);
+                cachedBytes[slot] = cached;
+                cachedPositions[slot] = new String(cached, StandardCharsets.UTF_8);
+            }
+            return cachedPositions[slot];
+        }
+
+        private StringBuilder appendUtf8(StringBuilder out, int offset, int length) {
+            int end = offset + length;
+            for (int i = offset; i < end; ) {
+                int b = data.get(i++);
+                if (b >= 0) {
+                    out.append((char) b);
+                } else if ((b & 0xe0) == 0xc0 && i < end) {
+                    out.append((char) ((b & 0x1f) << 6 | data.get(i++) & 0x3f));
+                } else if ((b & 0xf0) == 0xe0 && i + 1 < end) {
+                    out.append((char) ((b & 0x0f) << 12 | (data.get(i++) & 0x3f) << 6 | data.get(i++) & 0x3f));
+                } else if ((b & 0xf8) == 0xf0 && i + 2 < end) {
+                    out.appendCodePoint((b & 0x07) << 18 | (data.get(i++) & 0x3f) << 12
+                            | (data.get(i++) & 0x3f) << 6 | data.get(i++) & 0x3f);
+                } else {
+                    out.append('\uFFFD');
+                }
+            }
+            return out;
+        }
+
+        private boolean sliceEquals(int offset, int length, byte[] utf8) {
+            if (utf8.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (data.get(offset + i) != utf8[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private byte[] bytes(int offset, int length) {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            data.get(offset, scratch, 0, length);
+            return scratch;
+        }
+
+        private void skip(int length) {
+            if (length > data.remaining()) {
+                throw new IndexOutOfBoundsException();
+            }
+            data.position(data.position() + length);
+        }
+
+        private int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = data.get();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("bad varint at " + data.position());
+        }
+    }
+
+    // Growable in-memory channel for encode().
+    private static final class ByteBufferChannel implements WritableByteChannel {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            if (buffer.remaining() < n) {
+                ByteBuffer grown = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max(buffer.capacity() * 2L, (long) buffer.position() + n)));
+                grown.put(buffer.flip());
+                buffer = grown;
+            }
+            buffer.put(src);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+EmployeeCodec against Java serialization (ObjectOutputStream of the list) and JSON lines
+({"name":"...","position":"..."} per line), on the same employees: encoded size, encode
+time and decode time back to a List<Employee>. Also a scan of a memory-mapped codec file
+with EmployeeCodec.Cursor, which reads every record without creating Employee objects.
+
+Before timing it checks that every form decodes to the original employees, including
+non-ASCII names.
+
+    java EmployeeCodecBenchmark [employees] [dir]
+*/
+class EmployeeCodecBenchmark {
+
+    private static final String[] NAMES = {"Avinash", "Priya", "Zoë", "Łukasz", "Nguyễn", "张伟", "Ana \"AJ\" \\ O'Neil"};
+
+    static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = args.length > 1 ? Path.of(args[1]) : Path.of(System.getProperty("java.io.tmpdir"));
+
+        List<Employee> employees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            employees.add(new Employee(NAMES[i % NAMES.length] + " " + i,
+                    EmployeeReportBenchmark.POSITIONS[i % EmployeeReportBenchmark.POSITIONS.length]));
+        }
+
+        check("codec", employees, EmployeeCodec.decode(EmployeeCodec.encode(employees, false)));
+        check("codec + dictionary", employees, EmployeeCodec.decode(EmployeeCodec.encode(employees, true)));
+        check("Java serialization", employees, deserialize(serialize(employees)));
+        check("JSON lines", employees, fromJson(toJson(employees)));
+        Path file = Files.createTempFile(dir, "employees", ".bin");
+        try {
+            try (EmployeeCodec.Writer writer = EmployeeCodec.writer(file, true)) {
+                for (Employee employee : employees) {
+                    writer.write(employee);
+                }
+            }
+            check("mapped file", employees, EmployeeCodec.readAll(file));
+            System.out.printf(Locale.ROOT, "Round trip ok for %,d employees%n", count);
+
+            for (int round = 0; round < 3; round++) { // round 0 is warm-up
+                boolean report = round > 0;
+                if (report) {
+                    System.out.println();
+                }
+
+                long begin = System.nanoTime();
+                ByteBuffer plain = EmployeeCodec.encode(employees, false);
+                long encoded = System.nanoTime() - begin;
+                begin = System.nanoTime();
+                sink = EmployeeCodec.decode(plain).size();
+                print(report, "codec", plain.remaining(), encoded, System.nanoTime() - begin, count);
+
+                begin = System.nanoTime();
+                ByteBuffer dictionary = EmployeeCodec.encode(employees, true);
+                encoded = System.nanoTime() - begin;
+                begin = System.nanoTime();
+                sink = EmployeeCodec.decode(dictionary).size();
+                print(report, "codec + dictionary", dictionary.remaining(), encoded, System.nanoTime() - begin, count);
+
+                begin = System.nanoTime();
+                byte[] serialized = serialize(employees);
+                encoded = System.nanoTime() - begin;
+                begin = System.nanoTime();
+                sink = deserialize(serialized).size();
+                print(report, "Java serialization", serialized.length, encoded, System.nanoTime() - begin, count);
+
+                begin = System.nanoTime();
+                byte[] json = toJson(employees);
+                encoded = System.nanoTime() - begin;
+                begin = System.nanoTime();
+                sink = fromJson(json).size();
+                print(report, "JSON lines", json.length, encoded, System.nanoTime() - begin, count);
+
+                begin = System.nanoTime();
+                EmployeeCodec.Cursor cursor = EmployeeCodec.map(file);
+                int[] perPosition = new int[EmployeeReportBenchmark.POSITIONS.length];
+                long nameBytes = 0;
+                while (cursor.next()) {
+                    nameBytes += cursor.nameLength();
+                    perPosition[cursor.positionIndex()]++;
+                }
+                long scanned = System.nanoTime() - begin;
+                sink = nameBytes + perPosition[0];
+                if (report) {
+                    System.out.printf(Locale.ROOT, "%-22s %,12d bytes  %24s  scan   %6.1f ns/employee%n",
+                            "mapped cursor scan", Files.size(file), "", (double) scanned / count);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static void print(boolean report, String name, long bytes, long encodeNanos, long decodeNanos, int count) {
+        if (report) {
+            System.out.printf(Locale.ROOT, "%-22s %,12d bytes  encode %6.1f ns/employee  decode %6.1f ns/employee%n",
+                    name, bytes, (double) encodeNanos / count, (double) decodeNanos / count);
+        }
+    }
+
+    static void check(String name, List<Employee> expected, List<Employee> actual) {
+        boolean same = expected.size() == actual.size();
+        for (int i = 0; same && i < expected.size(); i++) {
+            same = expected.get(i).getName().equals(actual.get(i).getName())
+                    && expected.get(i).getPosition().equals(actual.get(i).getPosition());
+        }
+        if (!same) {
+            System.out.println("Round trip failed: " + name);
+            System.exit(1);
+        }
+    }
+
+    static byte[] serialize(List<Employee> employees) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new ArrayList<>(employees));
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Employee> deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (List<Employee>) in.readObject();
+        }
+    }
+
+    static byte[] toJson(List<Employee> employees) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(128);
+            for (Employee employee : employees) {
+                line.setLength(0);
+                line.append("{\"name\":");
+                quote(line, employee.getName());
+                line.append(",\"position\":");
+                quote(line, employee.getPosition());
+                line.append("}\n");
+                out.append(line);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static void quote(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    // Only reads what toJson() writes: {"name":"...","position":"..."}.
+    static List<Employee> fromJson(byte[] json) throws IOException {
+        List<Employee> employees = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8))) {
+            StringBuilder value = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null) {
+                int at = line.indexOf(':') + 1;
+                at = unquote(line, at, value);
+                String name = value.toString();
+                unquote(line, line.indexOf(':', at) + 1, value);
+                employees.add(new Employee(name, value.toString()));
+            }
+        }
+        return employees;
+    }
+
+    // Reads the string literal starting at `at` into `out`; returns the index after it.
+    static int unquote(String line, int at, StringBuilder out) {
+        out.setLength(0);
+        for (int i = at + 1; ; i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\') {
+                c = line.charAt(++i);
+                if (c == 'u') {
+                    c = (char) Integer.parseInt(line, i + 1, i + 5, 16);
+                    i += 4;
+                }
+            }
+            out.append(c);
+        }
+    }
+}
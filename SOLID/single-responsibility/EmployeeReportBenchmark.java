@@ -0,0 +1,99 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Locale;
+
+/*
+Rows/sec of the employee report export into a file:
+
+    println loop   reportGenerate() + EmployeeReportPrinter.print() per row, as in
+                   SingleResponsibility.main, with System.out set up the way the JVM sets it up
+                   (autoflush, 128-byte buffer) but pointing at the file
+    streaming      EmployeeReportGenerator.generateReports() into EmployeeReportPrinter.toFile()
+
+Employees come from a lazy Iterator, so no list of rows is ever held. Both files must be
+identical. Also prints bytes allocated per row.
+
+    java EmployeeReportBenchmark [rows] [outputDir]
+*/
+class EmployeeReportBenchmark {
+
+    static final String[] POSITIONS = {"Software Developer", "QA Engineer", "Product Manager", "Designer", "Data Scientist"};
+
+    static Iterator<Employee> employees(long rows) {
+        return new Iterator<Employee>() {
+            long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < rows;
+            }
+
+            @Override
+            public Employee next() {
+                long i = next++;
+                return new Employee("Employee-" + i, POSITIONS[(int) (i % POSITIONS.length)]);
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        Path dir = args.length > 1 ? Paths.get(args[1]) : Files.createTempDirectory("reports");
+        Path printlnFile = dir.resolve("println.txt");
+        Path streamFile = dir.resolve("streaming.txt");
+        EmployeeReportGenerator generator = new EmployeeReportGenerator();
+        PrintStream console = System.out;
+
+        for (int round = 0; round < 2; round++) { // first round is warm-up
+            boolean report = round == 1;
+
+            long allocated = allocatedBytes();
+            long begin = System.nanoTime();
+            try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(printlnFile.toFile()), 128), true)) {
+                System.setOut(out);
+                EmployeeReportPrinter printer = new EmployeeReportPrinter();
+                for (Iterator<Employee> it = employees(rows); it.hasNext(); ) {
+                    String line = generator.reportGenerate(it.next());
+                    printer.print(line);
+                }
+            } finally {
+                System.setOut(console);
+            }
+            print(report, "println loop", begin, allocated, rows);
+
+            allocated = allocatedBytes();
+            begin = System.nanoTime();
+            try (EmployeeReportPrinter printer = EmployeeReportPrinter.toFile(streamFile)) {
+                generator.generateReports(employees(rows), printer);
+            }
+            print(report, "streaming", begin, allocated, rows);
+        }
+
+        if (Files.mismatch(printlnFile, streamFile) != -1) {
+            System.out.println("outputs differ!");
+            System.exit(1);
+        }
+        System.out.printf(Locale.ROOT, "outputs identical, %,d bytes%n", Files.size(streamFile));
+        Files.delete(printlnFile);
+        Files.delete(streamFile);
+    }
+
+    static void print(boolean report, String name, long begin, long allocatedBefore, long rows) {
+        long elapsed = System.nanoTime() - begin;
+        long allocated = allocatedBytes() - allocatedBefore;
+        if (report) {
+            System.out.printf(Locale.ROOT, "%-14s %,12.0f rows/sec  %6.1f bytes allocated/row%n",
+                    name, rows * 1e9 / elapsed, (double) allocated / rows);
+        }
+    }
+
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -1,6 +1,208 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/*
+Builds the report text for an employee. It only formats; where the text goes is
+EmployeeReportPrinter's job.
+
+For big exports use generateReports(): it formats every row into one reused StringBuilder and
+hands it to the printer, so memory stays the same for 10 rows or 10 million (as long as the
+Iterator/Stream itself produces employees lazily).
+
+generateReportsParallel() does the formatting on a ForkJoinPool: the list is cut into chunks
+of `chunkSize` employees, and each worker formats a whole chunk and encodes it to UTF-8 in a
+buffer of its own. The calling thread hands the chunks to the printer strictly in list order,
+so the output is byte-for-byte what generateReports() writes. Only a window of
+2 x parallelism chunks is in flight, and their buffers are reused, so memory stays bounded.
+If a chunk fails (or the printer does), the chunks still in flight are cancelled and the
+exception is rethrown.
+
+cachedReport() keeps each employee's report, as UTF-8, indexed by employee id together with
+the Employee object and the version it was rendered from; it renders again when
+Employee.getVersion() has moved on, or when a different Employee now has that id (the cache
+never hands one employee's report to another). Employees without an id aren't cached.
+IncrementalReportExporter uses it so that a run after a few updates renders only those.
+The cache is not thread-safe and isn't used by the methods above.
+*/
 class EmployeeReportGenerator {
 
+    // Report cache, indexed by employee id (ids are dense, given by the directory); null owner = not cached.
+    private Employee[] cachedOwners = new Employee[0];
+    private long[] cachedVersions = new long[0];
+    private byte[][] cachedReports = new byte[0][];
+    private int cacheSize;
+    private final StringBuilder cacheLine = new StringBuilder(128);
+    private long renderCount;
+
     public String reportGenerate(Employee employee){
-        return "Employee "+ employee.getName() + " is in position "+ employee.getPosition();
+        return appendReport(employee, new StringBuilder(64)).toString();
+    }
+
+    // Appends the same text reportGenerate() returns, without creating a String.
+    public StringBuilder appendReport(Employee employee, StringBuilder out) {
+        return out.append("Employee ").append(employee.getName()).append(" is in position ").append(employee.getPosition());
+    }
+
+    // The report as UTF-8 (no line break), rendered again only if the employee changed since it was cached.
+    public byte[] cachedReport(Employee employee) {
+        int id = employee.getId();
+        if (id >= cachedVersions.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(id + 1L, cachedVersions.length * 3L / 2 + 16));
+            cachedOwners = Arrays.copyOf(cachedOwners, capacity);
+            cachedVersions = Arrays.copyOf(cachedVersions, capacity);
+            cachedReports = Arrays.copyOf(cachedReports, capacity);
+        } else if (id >= 0 && cachedOwners[id] == employee && cachedVersions[id] == employee.getVersion()) {
+            return cachedReports[id];
+        }
+        cacheLine.setLength(0);
+        byte[] utf8 = appendReport(employee, cacheLine).toString().getBytes(StandardCharsets.UTF_8);
+        renderCount++;
+        if (id < 0) {
+            return utf8;
+        }
+        if (cachedOwners[id] == null) {
+            cacheSize++;
+        }
+        cachedOwners[id] = employee;
+        cachedReports[id] = utf8;
+        cachedVersions[id] = employee.getVersion();
+        return utf8;
+    }
+
+    public void evict(int employeeId) {
+        if (employeeId >= 0 && employeeId < cachedOwners.length && cachedOwners[employeeId] != null) {
+            cachedOwners[employeeId] = null;
+            cachedVersions[employeeId] = 0;
+            cachedReports[employeeId] = null;
+            cacheSize--;
+        }
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    // Reports rendered by cachedReport() so far (cache misses).
+    public long getRenderCount() {
+        return renderCount;
+    }
+
+    // Prints one report per employee; returns the number of reports.
+    public long generateReports(Iterator<? extends Employee> employees, EmployeeReportPrinter printer) {
+        StringBuilder line = new StringBuilder(128);
+        long count = 0;
+        while (employees.hasNext()) {
+            line.setLength(0);
+            printer.print(appendReport(employees.next(), line));
+            count++;
+        }
+        return count;
+    }
+
+    public long generateReports(Stream<? extends Employee> employees, EmployeeReportPrinter printer) {
+        return generateReports(employees.iterator(), printer);
+    }
+
+    // Same output as generateReports(), formatted in parallel on the common ForkJoinPool.
+    public long generateReportsParallel(List<? extends Employee> employees, EmployeeReportPrinter printer) {
+        return generateReportsParallel(employees, printer, ForkJoinPool.commonPool(), 8192);
+    }
+
+    public long generateReportsParallel(List<? extends Employee> employees, EmployeeReportPrinter printer,
+                                        ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        int size = employees.size();
+        int chunks = (int) ((size + (long) chunkSize - 1) / chunkSize);
+        int window = Math.min(chunks, 2 * pool.getParallelism() + 1);
+        Chunk[] buffers = new Chunk[window];
+        List<ForkJoinTask<Chunk>> inFlight = new ArrayList<>(window);
+        try {
+            int submitted = 0;
+            for (; submitted < window; submitted++) {
+                inFlight.add(submit(pool, buffers, submitted, employees, chunkSize));
+            }
+            for (int next = 0; next < chunks; next++) {
+                int slot = next % window;
+                printer.printEncoded(inFlight.get(slot).join().bytes);
+                // The slot's buffer has been printed, so the chunk `window` places ahead may reuse it.
+                if (submitted < chunks) {
+                    inFlight.set(slot, submit(pool, buffers, submitted++, employees, chunkSize));
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            for (ForkJoinTask<Chunk> task : inFlight) {
+                task.cancel(true);
+            }
+            throw e;
+        }
+        return size;
+    }
+
+    private ForkJoinTask<Chunk> submit(ForkJoinPool pool, Chunk[] buffers, int index,
+                                       List<? extends Employee> employees, int chunkSize) {
+        int slot = index % buffers.length;
+        int from = index * chunkSize;
+        int to = (int) Math.min((long) from + chunkSize, employees.size());
+        return pool.submit(() -> {
+            Chunk chunk = buffers[slot];
+            if (chunk == null) {
+                buffers[slot] = chunk = new Chunk();
+            }
+            return chunk.format(this, employees, from, to);
+        });
+    }
+
+    // One chunk's reports, as text and then as UTF-8 bytes; reused for later chunks.
+    private static final class Chunk {
+        private final StringBuilder text = new StringBuilder();
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private CharBuffer chars = CharBuffer.allocate(0);
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+
+        Chunk format(EmployeeReportGenerator generator, List<? extends Employee> employees, int from, int to) {
+            text.setLength(0);
+            for (int i = from; i < to; i++) {
+                generator.appendReport(employees.get(i), text).append('\n');
+            }
+            int length = text.length();
+            if (chars.capacity() < length) {
+                chars = CharBuffer.allocate(length);
+            }
+            // copied to an array-backed CharBuffer: the UTF-8 encoder's fast path needs one
+            text.getChars(0, length, chars.array(), 0);
+            chars.limit(length).position(0);
+            int maxBytes = (int) Math.min(Integer.MAX_VALUE, (long) length * 3);
+            if (bytes.capacity() < maxBytes) {
+                bytes = ByteBuffer.allocate(maxBytes);
+            }
+            bytes.clear();
+            encoder.reset();
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(bytes);
+            }
+            if (!result.isUnderflow()) {
+                // only when length * 3 was capped: the rest of the chunk would be cut off silently
+                throw new IllegalStateException("report chunk of " + length + " chars doesn't fit in "
+                        + maxBytes + " UTF-8 bytes (" + result + "); use a smaller chunkSize");
+            }
+            bytes.flip();
+            return this;
+        }
     }
-}
\ No newline at end of file
+}
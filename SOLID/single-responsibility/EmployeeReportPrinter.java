@@ -1,5 +1,153 @@
-class EmployeeReportPrinter {
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+Prints reports, one per line. It only outputs; the text comes from EmployeeReportGenerator.
+
+new EmployeeReportPrinter() prints with System.out.println, as before. That flushes after
+every line (System.out is autoflush), i.e. one write system call per report.
+
+toFile() / toStdout() / the channel constructor print into a channel instead: each report is
+encoded (UTF-8) through one reused CharBuffer and CharsetEncoder into one reused ByteBuffer,
+which is written out only when full (default 256 KB) and on flush()/close(). No allocation
+per report and a few system calls per megabyte. Not thread-safe; use one printer per thread.
+*/
+class EmployeeReportPrinter implements Closeable {
+    private final WritableByteChannel channel; // null: System.out.println
+    private final boolean closeChannel;
+    private final ByteBuffer bytes;
+    private final CharsetEncoder encoder;
+    private CharBuffer chars;
+
+    public EmployeeReportPrinter() {
+        this.channel = null;
+        this.closeChannel = false;
+        this.bytes = null;
+        this.encoder = null;
+    }
+
+    public EmployeeReportPrinter(WritableByteChannel channel, int bufferSize, boolean closeChannel) {
+        if (bufferSize < 64) {
+            throw new IllegalArgumentException("bufferSize too small: " + bufferSize);
+        }
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.bytes = ByteBuffer.allocate(bufferSize); // heap: the UTF-8 encoder has a fast path for array-backed buffers
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(256);
+    }
+
+    public static EmployeeReportPrinter toFile(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new EmployeeReportPrinter(channel, 256 * 1024, true);
+    }
+
+    // Standard output, bypassing System.out; close() flushes but leaves stdout open.
+    public static EmployeeReportPrinter toStdout() {
+        return new EmployeeReportPrinter(new FileOutputStream(FileDescriptor.out).getChannel(), 256 * 1024, false);
+    }
+
     public void print(String report) {
-        System.out.println(report);
+        print((CharSequence) report);
+    }
+
+    public void print(CharSequence report) {
+        if (channel == null) {
+            System.out.println(report);
+            return;
+        }
+        int length = report.length();
+        if (chars.capacity() < length + 1) {
+            chars = CharBuffer.allocate(Math.max(length + 1, chars.capacity() * 2));
+        }
+        char[] array = chars.array();
+        if (report instanceof String) {
+            ((String) report).getChars(0, length, array, 0);
+        } else if (report instanceof StringBuilder) {
+            ((StringBuilder) report).getChars(0, length, array, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                array[i] = report.charAt(i);
+            }
+        }
+        array[length] = '\n';
+        chars.limit(length + 1).position(0);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        chars.clear();
+    }
+
+    // Prints reports that are already UTF-8 encoded, each ending with '\n' (as formatted by
+    // EmployeeReportGenerator.generateReportsParallel). Consumes `utf8Lines`.
+    public void printEncoded(ByteBuffer utf8Lines) {
+        if (channel == null) {
+            System.out.print(StandardCharsets.UTF_8.decode(utf8Lines));
+            System.out.flush();
+            return;
+        }
+        if (utf8Lines.remaining() > bytes.remaining()) {
+            drain();
+        }
+        if (utf8Lines.remaining() > bytes.remaining()) {
+            write(utf8Lines); // bigger than the whole buffer: no point copying it
+        } else {
+            bytes.put(utf8Lines);
+        }
+    }
+
+    public void flush() {
+        if (channel != null) {
+            drain();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+
+    private void drain() {
+        bytes.flip();
+        try {
+            write(bytes);
+        } finally {
+            bytes.clear();
+        }
+    }
+
+    private void write(ByteBuffer buffer) {
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("report output failed", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+/*
+Scaling of EmployeeReportGenerator.generateReportsParallel() from 1 to N worker threads,
+against the single-threaded generateReports() streaming export.
+
+The output goes to a channel that only computes a CRC of what it receives, so the numbers are
+the CPU cost of formatting + encoding (not the disk), and every run must produce the same CRC
+(same bytes, same order) as the sequential export.
+
+    efficiency = speed-up over sequential / threads
+
+    java EmployeeReportScalingBenchmark [rows] [maxThreads] [chunkSize]
+*/
+class EmployeeReportScalingBenchmark {
+
+    // Discards the bytes, keeping a CRC32 of them.
+    static final class ChecksumChannel implements WritableByteChannel {
+        final CRC32 crc = new CRC32();
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            crc.update(src);
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 8192;
+
+        List<Employee> employees = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            employees.add(new Employee("Employee-" + i, EmployeeReportBenchmark.POSITIONS[i % EmployeeReportBenchmark.POSITIONS.length]));
+        }
+        EmployeeReportGenerator generator = new EmployeeReportGenerator();
+        System.out.printf(Locale.ROOT, "%,d rows, %d cores available%n", rows, Runtime.getRuntime().availableProcessors());
+
+        long expectedCrc = 0;
+        double sequentialNanos = 0;
+        for (int round = 0; round < 2; round++) { // first round is warm-up
+            boolean report = round == 1;
+            ChecksumChannel out = new ChecksumChannel();
+            long begin = System.nanoTime();
+            try (EmployeeReportPrinter printer = new EmployeeReportPrinter(out, 256 * 1024, false)) {
+                generator.generateReports(employees.iterator(), printer);
+            }
+            sequentialNanos = System.nanoTime() - begin;
+            expectedCrc = out.crc.getValue();
+            if (report) {
+                System.out.printf(Locale.ROOT, "%-12s %,12.0f rows/sec%n", "sequential", rows * 1e9 / sequentialNanos);
+            }
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                out = new ChecksumChannel();
+                begin = System.nanoTime();
+                try (EmployeeReportPrinter printer = new EmployeeReportPrinter(out, 256 * 1024, false)) {
+                    generator.generateReportsParallel(employees, printer, pool, chunkSize);
+                }
+                long elapsed = System.nanoTime() - begin;
+                pool.shutdown();
+                if (out.crc.getValue() != expectedCrc) {
+                    System.out.println("parallel output differs from sequential with " + threads + " threads!");
+                    System.exit(1);
+                }
+                if (report) {
+                    double speedUp = sequentialNanos / elapsed;
+                    System.out.printf(Locale.ROOT, "%2d threads   %,12.0f rows/sec  speed-up %5.2fx  efficiency %5.1f%%%n",
+                            threads, rows * 1e9 / elapsed, speedUp, 100 * speedUp / threads);
+                }
+            }
+        }
+        System.out.println("all outputs identical to the sequential export");
+    }
+}
@@ -0,0 +1,293 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/*
+Employees stored by column instead of as Employee objects; an employee is just its id
+(0, 1, 2, ... in insertion order).
+
+- Names: UTF-8 bytes, one after another in a single byte[] arena, each preceded by its length
+  as a varint. Only every 16th employee's start offset is kept; name(id) jumps to its block
+  and skips at most 15 names.
+- Positions: dictionary-encoded. Each distinct position String is stored once and gets an
+  int code; the per-employee column holds the code, one byte each while there are at most
+  256 positions, 4 bytes each after that.
+- Inverted index, position -> ids: a sorted int[] of ids while the position is rare, switched
+  to a bitmap (BitSet) once more than 1 in 32 employees hold it - whichever is smaller. So
+  "how many Software Developers" is an array read, and listing them never touches names.
+
+Heap per employee is roughly name bytes + 1 (length) + 1 (position) + 0.25 (offsets) + index,
+against ~80 bytes for an Employee with its own name String in a List.
+
+Not thread-safe: fill it from one thread, then share it (safely published) for reading.
+*/
+class EmployeeStore {
+
+    private static final int BLOCK_SHIFT = 4; // 16 employees per offset block
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    private int size;
+    private byte[] names = new byte[1024];
+    private int namesLength;
+    private int[] blockOffsets = new int[16];
+
+    private byte[] smallCodes = new byte[256]; // position codes while there are <= 256 positions
+    private int[] codes;                       // after that
+    private final List<String> positions = new ArrayList<>();
+    private final Map<String, Integer> positionCodes = new HashMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+
+    // Ids of the employees holding one position.
+    private static final class Postings {
+        int count;
+        int[] ids = new int[4]; // sorted, while sparse
+        BitSet bits;            // once dense
+
+        void add(int id) {
+            count++;
+            if (bits != null) {
+                bits.set(id);
+                return;
+            }
+            if (count > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(4, ids.length * 2)); // trimToSize() may have left it empty
+            }
+            ids[count - 1] = id;
+            if (count >= 64 && (long) count * 32 > id + 1L) { // an int each costs more than 1 bit for everyone
+                bits = new BitSet(id + 1);
+                for (int i = 0; i < count; i++) {
+                    bits.set(ids[i]);
+                }
+                ids = null;
+            }
+        }
+
+        void forEach(IntConsumer action) {
+            if (bits != null) {
+                for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+                    action.accept(id);
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    action.accept(ids[i]);
+                }
+            }
+        }
+
+        int[] toArray() {
+            if (bits == null) {
+                return Arrays.copyOf(ids, count);
+            }
+            int[] out = new int[count];
+            long[] words = bits.toLongArray();
+            int at = 0;
+            for (int w = 0; w < words.length; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    out[at++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+            return out;
+        }
+
+        void trimToSize() {
+            if (ids != null) {
+                ids = Arrays.copyOf(ids, count);
+            } else {
+                BitSet trimmed = (BitSet) bits.clone(); // clone() drops unused words
+                bits = trimmed;
+            }
+        }
+    }
+
+    // Returns the new employee's id.
+    public int add(String name, String position) {
+        if (name == null || position == null) {
+            throw new IllegalArgumentException("name and position are required");
+        }
+        int id = size;
+        if (id == Integer.MAX_VALUE) {
+            throw new IllegalStateException("store is full");
+        }
+        appendName(id, name.getBytes(StandardCharsets.UTF_8));
+        int code = codeOf(position);
+        setCode(id, code);
+        postings.get(code).add(id);
+        size++;
+        return id;
+    }
+
+    public int add(Employee employee) {
+        return add(employee.getName(), employee.getPosition());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int id) {
+        checkId(id);
+        int offset = nameOffset(id);
+        int length = names[offset] & 0x7f;
+        int header = 1;
+        if (names[offset] < 0) {
+            length |= (names[offset + 1] & 0x7f) << 7;
+            header = 2;
+            if (names[offset + 1] < 0) {
+                length |= (names[offset + 2] & 0x7f) << 14;
+                header = 3;
+            }
+        }
+        return new String(names, offset + header, length, StandardCharsets.UTF_8);
+    }
+
+    public String position(int id) {
+        checkId(id);
+        return positions.get(code(id));
+    }
+
+    // Materializes the employee, with its store id; the store itself never holds Employee objects.
+    public Employee get(int id) {
+        return new Employee(id, name(id), position(id));
+    }
+
+    public int countByPosition(String position) {
+        Integer code = positionCodes.get(position);
+        return code == null ? 0 : postings.get(code).count;
+    }
+
+    // Calls `action` with the id of every employee in `position`, in id order.
+    public void forEachWithPosition(String position, IntConsumer action) {
+        Integer code = positionCodes.get(position);
+        if (code != null) {
+            postings.get(code).forEach(action);
+        }
+    }
+
+    public int[] idsWithPosition(String position) {
+        Integer code = positionCodes.get(position);
+        if (code == null) {
+            return new int[0];
+        }
+        return postings.get(code).toArray();
+    }
+
+    // Position -> number of employees, in order of first appearance.
+    public Map<String, Integer> countsByPosition() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int code = 0; code < positions.size(); code++) {
+            counts.put(positions.get(code), postings.get(code).count);
+        }
+        return counts;
+    }
+
+    public List<String> positions() {
+        return new ArrayList<>(positions);
+    }
+
+    // Drops the spare capacity left by growing the arrays (e.g. after a bulk load). Adding
+    // afterwards is fine; the arrays grow again from whatever size they were trimmed to.
+    public void trimToSize() {
+        names = Arrays.copyOf(names, namesLength);
+        blockOffsets = Arrays.copyOf(blockOffsets, (size + BLOCK_MASK) >>> BLOCK_SHIFT);
+        if (codes != null) {
+            codes = Arrays.copyOf(codes, size);
+        } else {
+            smallCodes = Arrays.copyOf(smallCodes, size);
+        }
+        for (Postings list : postings) {
+            list.trimToSize();
+        }
+    }
+
+    private void appendName(int id, byte[] name) {
+        if (name.length >= 1 << 21) { // the length must fit the 3-byte varint name() decodes
+            throw new IllegalArgumentException("name too long: " + name.length + " bytes (max 2 MB)");
+        }
+        long needed = (long) namesLength + name.length + 3;
+        if (needed > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("name arena is full (2 GB)");
+        }
+        if (needed > names.length) {
+            names = Arrays.copyOf(names, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, names.length * 2L)));
+        }
+        if ((id & BLOCK_MASK) == 0) {
+            int block = id >>> BLOCK_SHIFT;
+            if (block == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, Math.max(1, blockOffsets.length * 2));
+            }
+            blockOffsets[block] = namesLength;
+        }
+        int length = name.length;
+        while (length >= 0x80) {
+            names[namesLength++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        names[namesLength++] = (byte) length;
+        System.arraycopy(name, 0, names, namesLength, name.length);
+        namesLength += name.length;
+    }
+
+    private int nameOffset(int id) {
+        int offset = blockOffsets[id >>> BLOCK_SHIFT];
+        for (int skip = id & BLOCK_MASK; skip > 0; skip--) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = names[offset++];
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            offset += length;
+        }
+        return offset;
+    }
+
+    private int codeOf(String position) {
+        Integer code = positionCodes.get(position);
+        if (code == null) {
+            code = positions.size();
+            positions.add(position);
+            positionCodes.put(position, code);
+            postings.add(new Postings());
+            if (code == 256) { // no longer fits a byte: widen the column
+                codes = new int[Math.max(smallCodes.length, 16)];
+                for (int i = 0; i < size; i++) {
+                    codes[i] = smallCodes[i] & 0xff;
+                }
+                smallCodes = null;
+            }
+        }
+        return code;
+    }
+
+    private void setCode(int id, int code) {
+        if (codes != null) {
+            if (id == codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(1, codes.length * 2));
+            }
+            codes[id] = code;
+        } else {
+            if (id == smallCodes.length) {
+                smallCodes = Arrays.copyOf(smallCodes, Math.max(1, smallCodes.length * 2));
+            }
+            smallCodes[id] = (byte) code;
+        }
+    }
+
+    private int code(int id) {
+        return codes != null ? codes[id] : smallCodes[id] & 0xff;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("no employee " + id + " (size " + size + ")");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+Heap of EmployeeStore against List<Employee> for the same directory, and the cost of
+position queries on the store.
+
+Heap is measured as used memory after GC with only one of the two structures reachable.
+Position Strings are shared between Employee objects (the cheapest case for the list);
+positions follow a skewed distribution, a few are common and most are rare.
+
+Run with enough heap for the list, e.g. at 20M employees:
+    java -Xmx4g EmployeeStoreBenchmark 20000000 [positions]
+*/
+class EmployeeStoreBenchmark {
+
+    static volatile long sink;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int positionCount = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+        String[] positions = new String[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            positions[i] = i < EmployeeReportBenchmark.POSITIONS.length
+                    ? EmployeeReportBenchmark.POSITIONS[i] : "Position " + i;
+        }
+        int[] picks = skewedPicks(count, positionCount, new Random(11));
+
+        long baseline = usedHeap();
+        List<Employee> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(new Employee(name(i), positions[picks[i]]));
+        }
+        long listBytes = usedHeap() - baseline;
+        sink = list.size();
+        list = null;
+
+        baseline = usedHeap();
+        EmployeeStore store = new EmployeeStore();
+        for (int i = 0; i < count; i++) {
+            store.add(name(i), positions[picks[i]]);
+        }
+        store.trimToSize();
+        long storeBytes = usedHeap() - baseline;
+
+        System.out.printf(Locale.ROOT, "%,d employees, %d positions%n", count, positionCount);
+        System.out.printf(Locale.ROOT, "%-24s %,8.1f MB  %5.1f bytes/employee%n",
+                "List<Employee>", listBytes / 1e6, (double) listBytes / count);
+        System.out.printf(Locale.ROOT, "%-24s %,8.1f MB  %5.1f bytes/employee  (%.1fx smaller)%n",
+                "EmployeeStore", storeBytes / 1e6, (double) storeBytes / count, (double) listBytes / storeBytes);
+
+        for (int i = 0; i < count; i += count / 7 + 1) {
+            if (!store.name(i).equals(name(i)) || !store.position(i).equals(positions[picks[i]])) {
+                System.out.println("Mismatch at " + i);
+                System.exit(1);
+            }
+        }
+
+        String common = positions[0];
+        String rare = positions[positionCount - 1];
+        for (int round = 0; round < 3; round++) { // round 0 is warm-up
+            boolean report = round > 0;
+
+            long[] samples = new long[100_000];
+            for (int i = 0; i < samples.length; i++) {
+                long begin = System.nanoTime();
+                sink += store.countByPosition(positions[i % positionCount]);
+                samples[i] = System.nanoTime() - begin;
+            }
+            Arrays.sort(samples);
+            if (report) {
+                System.out.printf(Locale.ROOT, "%-40s p50 %,8d ns  p99 %,8d ns%n", "countByPosition",
+                        samples[samples.length / 2], samples[samples.length * 99 / 100]);
+            }
+
+            query(report, "ids of \"" + common + "\"", store, common);
+            query(report, "ids of \"" + rare + "\"", store, rare);
+        }
+    }
+
+    static void query(boolean report, String name, EmployeeStore store, String position) {
+        long best = Long.MAX_VALUE;
+        int found = 0;
+        for (int i = 0; i < 5; i++) {
+            long begin = System.nanoTime();
+            int[] ids = store.idsWithPosition(position);
+            best = Math.min(best, System.nanoTime() - begin);
+            found = ids.length;
+        }
+        if (report) {
+            System.out.printf(Locale.ROOT, "%-40s %,10d ids  %8.3f ms%n", name, found, best / 1e6);
+        }
+    }
+
+    // Position i is picked with weight 1 / (i + 1).
+    static int[] skewedPicks(int count, int positions, Random random) {
+        double[] cumulative = new double[positions];
+        double total = 0;
+        for (int i = 0; i < positions; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        int[] picks = new int[count];
+        for (int i = 0; i < count; i++) {
+            int at = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            picks[i] = Math.min(at < 0 ? -at - 1 : at, positions - 1);
+        }
+        return picks;
+    }
+
+    static String name(int i) {
+        return "Employee " + i;
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
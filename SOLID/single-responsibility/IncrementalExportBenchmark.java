@@ -0,0 +1,92 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+Nightly export with IncrementalReportExporter: a full export, then a few "days" in each of
+which `churn` percent of the employees change position and only the changes are exported.
+Compared with the full export, and with writing everything again through
+EmployeeReportGenerator.generateReports() as the job did before.
+
+After the last day it checks that the incrementally maintained file is byte-for-byte the file
+a fresh full export writes.
+
+    java IncrementalExportBenchmark [employees] [churnPercent] [days] [dir]
+*/
+class IncrementalExportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        double churn = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+        int days = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Path dir = args.length > 3 ? Path.of(args[3]) : Path.of(System.getProperty("java.io.tmpdir"));
+        String[] positions = EmployeeReportBenchmark.POSITIONS;
+
+        List<Employee> employees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            employees.add(new Employee(i, "Employee-" + i, positions[i % positions.length]));
+        }
+        EmployeeChangeLog changeLog = new EmployeeChangeLog();
+        changeLog.track(employees);
+        EmployeeReportGenerator generator = new EmployeeReportGenerator();
+
+        Path file = Files.createTempFile(dir, "reports", ".txt");
+        Path fresh = Files.createTempFile(dir, "reports-full", ".txt");
+        Path plain = Files.createTempFile(dir, "reports-plain", ".txt");
+        try (IncrementalReportExporter exporter = IncrementalReportExporter.builder(file).setGenerator(generator).build()) {
+            long begin = System.nanoTime();
+            exporter.exportAll(employees, changeLog);
+            System.out.printf(Locale.ROOT, "%,d employees, %.1f%% churn, slots of %d bytes%n",
+                    count, churn, exporter.getSlotWidth());
+            System.out.printf(Locale.ROOT, "%-36s %9.1f ms  (renders %,d)%n",
+                    "exportAll (first run)", (System.nanoTime() - begin) / 1e6, generator.getRenderCount());
+
+            Random random = new Random(5);
+            int changes = (int) (count * churn / 100);
+            for (int day = 1; day <= days; day++) {
+                for (int i = 0; i < changes; i++) {
+                    Employee employee = employees.get(random.nextInt(count));
+                    employee.setPosition(positions[random.nextInt(positions.length)]);
+                }
+                long renders = generator.getRenderCount();
+                begin = System.nanoTime();
+                int exported = exporter.exportChanges();
+                long elapsed = System.nanoTime() - begin;
+                System.out.printf(Locale.ROOT, "%-36s %9.1f ms  (%,d changed, renders %,d)%n",
+                        "day " + day + ": exportChanges", elapsed / 1e6, exported, generator.getRenderCount() - renders);
+            }
+
+            for (int round = 0; round < 2; round++) {
+                begin = System.nanoTime();
+                try (IncrementalReportExporter full = IncrementalReportExporter.builder(fresh).setGenerator(generator).build()) {
+                    full.exportAll(employees, new EmployeeChangeLog());
+                }
+                long exportAll = System.nanoTime() - begin;
+
+                begin = System.nanoTime();
+                try (EmployeeReportPrinter printer = EmployeeReportPrinter.toFile(plain)) {
+                    new EmployeeReportGenerator().generateReports(employees.iterator(), printer);
+                }
+                long regenerate = System.nanoTime() - begin;
+                if (round == 1) { // round 0 is warm-up
+                    System.out.printf(Locale.ROOT, "%-36s %9.1f ms  (cache warm)%n", "exportAll", exportAll / 1e6);
+                    System.out.printf(Locale.ROOT, "%-36s %9.1f ms%n", "generateReports (render everything)", regenerate / 1e6);
+                }
+            }
+
+            if (!Arrays.equals(Files.readAllBytes(file), Files.readAllBytes(fresh))) {
+                System.out.println("Incremental file differs from a full export");
+                System.exit(1);
+            }
+            System.out.println("Incremental file matches a full export");
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(fresh);
+            Files.deleteIfExists(plain);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+Keeps a report file up to date by rewriting only the reports of employees that changed.
+
+Every line of the file is a fixed-size slot: the employee's report padded with spaces to
+slotWidth - 1 bytes, then '\n'. Employee id N is line N (ids with no employee are blank
+lines), so an employee's report is at byte id * slotWidth and can be overwritten in place.
+The ids must come from the directory the employees belong to (e.g. EmployeeStore.get()): an
+employee without an id, or a second Employee object with an id already exported, is rejected
+with IllegalArgumentException rather than written over someone else's line.
+
+    exportAll(employees, changeLog)   writes the whole file and remembers changeLog's mark
+    exportChanges()                   rewrites the slots of the employees changed since then
+
+The exporter owns the trimming of changeLog: after each export it discards the entries up to
+the exported mark, so the log holds only the changes not yet exported. Don't give the same log
+to another reader that still needs those entries.
+
+exportChanges() costs O(changed): the change log names the employees, the generator's cache
+renders only those, and their slots are written through memory-mapped windows of the file
+(a positional write system call per slot costs more than re-rendering everything when the
+changes are scattered). If a changed report no longer fits its slot nothing is written and
+it throws; exportAll() then picks a wider slot.
+
+The slot width is the longest report (plus a line break) rounded up to 16 bytes, at least
+setSlotWidth() (default 64). setFsync(true) forces the file to disk at the end of each export.
+Not thread-safe.
+*/
+class IncrementalReportExporter implements Closeable {
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final FileChannel channel;
+    private final EmployeeReportGenerator generator;
+    private final int minimumSlotWidth;
+    private final boolean fsync;
+    private final ByteBuffer buffer;
+    private int slotWidth; // 0 until exportAll()
+    private byte[] blank;  // an empty slot
+    private long slots;
+    private Employee[] owners = new Employee[0]; // the employee exported on each line
+    private MappedByteBuffer[] windows = new MappedByteBuffer[0];
+    private long slotsPerWindow;
+    private EmployeeChangeLog changeLog;
+    private long exportedMark;
+
+    private IncrementalReportExporter(Builder builder) throws IOException {
+        this.generator = builder.generator;
+        this.minimumSlotWidth = builder.slotWidth;
+        this.fsync = builder.fsync;
+        this.buffer = ByteBuffer.allocate(builder.bufferSize);
+        this.channel = FileChannel.open(builder.file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public static Builder builder(Path file) {
+        return new Builder(file);
+    }
+
+    // Rewrites the whole file; returns the number of reports.
+    public long exportAll(Collection<? extends Employee> employees, EmployeeChangeLog changeLog) throws IOException {
+        List<Employee> byId = new ArrayList<>(employees);
+        byId.sort(Comparator.comparingInt(Employee::getId));
+        int longest = 0;
+        Employee previous = null;
+        for (Employee employee : byId) {
+            checkId(employee);
+            if (previous != null && previous.getId() == employee.getId()) {
+                throw new IllegalArgumentException("duplicate employee id " + employee.getId());
+            }
+            previous = employee;
+            longest = Math.max(longest, generator.cachedReport(employee).length);
+        }
+        int width = Math.max(minimumSlotWidth, (longest + 1 + 15) & ~15);
+        if (width > buffer.capacity()) {
+            throw new IllegalStateException("reports of " + longest + " bytes don't fit the " + buffer.capacity() + " byte buffer");
+        }
+        slotWidth = width;
+        blank = new byte[width];
+        Arrays.fill(blank, (byte) ' ');
+        blank[width - 1] = '\n';
+        windows = new MappedByteBuffer[0]; // mapped for the old width; never touched again
+        slotsPerWindow = WINDOW_BYTES / width;
+        this.changeLog = changeLog;
+        exportedMark = changeLog.mark();
+
+        slots = 0;
+        owners = new Employee[byId.isEmpty() ? 0 : byId.get(byId.size() - 1).getId() + 1];
+        buffer.clear();
+        for (Employee employee : byId) {
+            while (slots < employee.getId()) {
+                appendSlot(null);
+            }
+            owners[employee.getId()] = employee;
+            appendSlot(generator.cachedReport(employee));
+        }
+        flushAppended();
+        channel.truncate(slots * slotWidth);
+        if (fsync) {
+            channel.force(false);
+        }
+        changeLog.discardBefore(exportedMark);
+        return byId.size();
+    }
+
+    // Rewrites the slots of employees changed since the last export; returns how many.
+    public int exportChanges() throws IOException {
+        if (changeLog == null) {
+            throw new IllegalStateException("exportAll() first");
+        }
+        long mark = changeLog.mark();
+        List<Employee> changed = changeLog.changedSince(exportedMark);
+        int maxId = -1;
+        for (Employee employee : changed) {
+            checkId(employee);
+            int id = employee.getId();
+            if (id < owners.length && owners[id] != null && owners[id] != employee) {
+                throw new IllegalArgumentException("duplicate employee id " + id);
+            }
+            int length = generator.cachedReport(employee).length;
+            if (length >= slotWidth) {
+                throw new IllegalStateException("report of employee " + employee.getId() + " is " + length
+                        + " bytes, slots are " + slotWidth + "; run exportAll()");
+            }
+            maxId = Math.max(maxId, employee.getId());
+        }
+        if (maxId >= slots) { // new employees: grow the file with blank slots first
+            buffer.clear();
+            while (slots <= maxId) {
+                appendSlot(null);
+            }
+            flushAppended();
+        }
+
+        if (maxId >= owners.length) {
+            owners = Arrays.copyOf(owners, maxId + 1);
+        }
+        boolean[] touched = new boolean[windows.length];
+        for (Employee employee : changed) {
+            owners[employee.getId()] = employee;
+            int window = (int) (employee.getId() / slotsPerWindow);
+            MappedByteBuffer mapped = window(window);
+            int at = (int) (employee.getId() % slotsPerWindow) * slotWidth;
+            byte[] report = generator.cachedReport(employee);
+            mapped.put(at, report).put(at + report.length, blank, report.length, slotWidth - report.length);
+            if (window >= touched.length) {
+                touched = Arrays.copyOf(touched, windows.length);
+            }
+            touched[window] = true;
+        }
+        if (fsync) {
+            for (int i = 0; i < touched.length; i++) {
+                if (touched[i]) {
+                    windows[i].force();
+                }
+            }
+        }
+        exportedMark = mark;
+        changeLog.discardBefore(exportedMark);
+        return changed.size();
+    }
+
+    public int getSlotWidth() {
+        return slotWidth;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void checkId(Employee employee) {
+        if (employee.getId() < 0) {
+            throw new IllegalArgumentException("employee " + employee.getName() + " has no id");
+        }
+    }
+
+    // Adds a slot (blank for null) after the last one, through `buffer`.
+    private void appendSlot(byte[] report) throws IOException {
+        if (buffer.remaining() < slotWidth) {
+            flushAppended();
+        }
+        int length = report == null ? 0 : report.length;
+        if (report != null) {
+            buffer.put(report);
+        }
+        buffer.put(blank, length, slotWidth - length);
+        slots++;
+    }
+
+    // Writes the buffered slots, which end at slot `slots`.
+    private void flushAppended() throws IOException {
+        buffer.flip();
+        long position = slots * slotWidth - buffer.remaining();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+
+    private MappedByteBuffer window(int index) throws IOException {
+        if (index >= windows.length) {
+            windows = Arrays.copyOf(windows, index + 1);
+        }
+        long start = index * slotsPerWindow * slotWidth;
+        long size = Math.min(slotsPerWindow, slots - index * slotsPerWindow) * slotWidth;
+        MappedByteBuffer mapped = windows[index];
+        if (mapped == null || mapped.capacity() < size) { // the last window grows with the file
+            windows[index] = mapped = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+        }
+        return mapped;
+    }
+
+    // Builder
+    public static class Builder {
+        private final Path file;
+        private EmployeeReportGenerator generator = new EmployeeReportGenerator();
+        private int slotWidth = 64;
+        private boolean fsync;
+        private int bufferSize = 256 * 1024;
+
+        private Builder(Path file) {
+            this.file = file;
+        }
+
+        public Builder setGenerator(EmployeeReportGenerator generator) {
+            this.generator = generator;
+            return this;
+        }
+
+        public Builder setSlotWidth(int slotWidth) {
+            if (slotWidth < 2) {
+                throw new IllegalArgumentException("slotWidth too small: " + slotWidth);
+            }
+            this.slotWidth = slotWidth;
+            return this;
+        }
+
+        public Builder setFsync(boolean fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+
+        public Builder setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public IncrementalReportExporter build() throws IOException {
+            return new IncrementalReportExporter(this);
+        }
+    }
+}
@@ -1,10 +1,60 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
 class SingleResponsibility {
-    public static void main(String[] args){
+    public static void main(String[] args) throws IOException {
         Employee emp = new Employee("Avinash", "Software Developer");
         EmployeeReportGenerator reportGen = new EmployeeReportGenerator();
         EmployeeReportPrinter printer = new EmployeeReportPrinter();
 
         String report = reportGen.reportGenerate(emp);
         printer.print(report);
+
+        // Streaming: any number of employees through one reused buffer
+        try (EmployeeReportPrinter out = EmployeeReportPrinter.toStdout()) {
+            reportGen.generateReports(Stream.of(
+                    new Employee("Priya", "QA Engineer"),
+                    new Employee("Rahul", "Product Manager")), out);
+        }
+
+        // Column store: query by position without Employee objects
+        EmployeeStore store = new EmployeeStore();
+        store.add(emp);
+        store.add("Priya", "QA Engineer");
+        store.add("Rahul", "Software Developer");
+        System.out.println(store.countsByPosition()); // {Software Developer=2, QA Engineer=1}
+        for (int id : store.idsWithPosition("Software Developer")) {
+            System.out.println(store.name(id));
+        }
+
+        // Binary codec: persist/transfer employees, read them back without Employee objects
+        ByteBuffer encoded = EmployeeCodec.encode(List.of(emp, new Employee("Priya", "QA Engineer")), true);
+        EmployeeCodec.Cursor cursor = EmployeeCodec.cursor(encoded);
+        while (cursor.next()) {
+            System.out.println(cursor.appendName(new StringBuilder()).append(" - ").append(cursor.position()));
+        }
+
+        // Incremental export: after an update only the changed employee's line is rewritten.
+        // The store owns the directory, so it hands out the ids (line numbers in the file).
+        List<Employee> team = new ArrayList<>();
+        for (int id = 0; id < store.size(); id++) {
+            team.add(store.get(id));
+        }
+        EmployeeChangeLog changeLog = new EmployeeChangeLog();
+        changeLog.track(team);
+        Path file = Files.createTempFile("reports", ".txt");
+        try (IncrementalReportExporter exporter = IncrementalReportExporter.builder(file).build()) {
+            exporter.exportAll(team, changeLog);
+            team.get(2).setPosition("Product Manager");
+            System.out.println("Rewrote " + exporter.exportChanges() + " report(s)");
+            Files.readAllLines(file).forEach(line -> System.out.println(line.trim()));
+        } finally {
+            Files.delete(file);
+        }
     }
-}
\ No newline at end of file
+}
@@ -5,22 +5,42 @@ When do we use it?
 When an object has many optional fields
 When an object is complex to construct
 When you want readable object creation (fluent style)
+
+Hot request paths: most URLs reuse a small set of protocol/domain/path combinations. With
+setPrefixCaching(true) the Builder looks the immutable prefix "protocol://domain/path" up in a
+shared, bounded PrefixCache, so build() only appends the query into an exactly sized buffer.
+
+Query parameters can be added one at a time with addQueryParam(key, value); keys and values are
+percent-encoded straight into one reusable buffer, and writeTo(Appendable / ByteBuffer) emits the
+URL without building a String at all. URLBuilder.parse() goes the other way: it splits a URL into
+offset/length slices without copying (see ParsedURL).
 */
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 class URLBuilder {
     private String protocol;
     private String domain;
     private String path;
     private String query;
+    private String prefix; // cached "protocol://domain/path", null when prefix caching is off
 
     private URLBuilder(Builder builder) {
         this.protocol = builder.protocol;
         this.domain = builder.domain;
         this.path = builder.path;
-        this.query = builder.query;
+        this.query = builder.combinedQuery();
+        if (builder.prefixCaching) {
+            this.prefix = PrefixCache.SHARED.get(protocol, domain, path);
+        }
     }
 
     public String build() {
+        if (prefix != null) {
+            return buildFromPrefix();
+        }
         StringBuilder url = new StringBuilder();
         url.append(protocol).append("://").append(domain);
 
@@ -35,12 +55,97 @@ class URLBuilder {
         return url.toString();
     }
 
+    private String buildFromPrefix() {
+        if (query == null || query.isEmpty()) {
+            return prefix; // shared instance, nothing to copy
+        }
+        // javac turns this into one invokedynamic concat: exact size, a single array, no builder copy
+        return prefix + '?' + query;
+    }
+
+    static String prefixOf(String protocol, String domain, String path) {
+        boolean hasPath = path != null && !path.isEmpty();
+        StringBuilder prefix = new StringBuilder(String.valueOf(protocol).length() + 3 + String.valueOf(domain).length()
+                + (hasPath ? 1 + path.length() : 0));
+        prefix.append(protocol).append("://").append(domain);
+        if (hasPath) {
+            prefix.append('/').append(path);
+        }
+        return prefix.toString();
+    }
+
+    /*
+    Bounded, 2-way set-associative cache of URL prefixes shared by all builders.
+
+    A fixed array of immutable entries. The hash of (protocol, domain, path) picks a set of two
+    adjacent slots - String caches its own hash, so a lookup allocates nothing. A miss builds the
+    prefix, puts it in the set's first slot and moves the previous first entry to the second,
+    dropping whatever was there; so the memory bound never changes. Entries have only final
+    fields, so the unsynchronized array writes are safe to publish; the worst a race does is
+    rebuild a prefix.
+    */
+    static final class PrefixCache {
+        static final PrefixCache SHARED = new PrefixCache(8192);
+
+        private static final class Entry {
+            final String protocol;
+            final String domain;
+            final String path;
+            final String prefix;
+
+            Entry(String protocol, String domain, String path, String prefix) {
+                this.protocol = protocol;
+                this.domain = domain;
+                this.path = path;
+                this.prefix = prefix;
+            }
+
+            boolean matches(String protocol, String domain, String path) {
+                return java.util.Objects.equals(this.protocol, protocol)
+                        && java.util.Objects.equals(this.domain, domain)
+                        && java.util.Objects.equals(this.path, path);
+            }
+        }
+
+        private final Entry[] table;
+
+        PrefixCache(int capacity) {
+            if (Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+            }
+            this.table = new Entry[capacity];
+        }
+
+        String get(String protocol, String domain, String path) {
+            int h = protocol == null ? 0 : protocol.hashCode();
+            h = 31 * h + (domain == null ? 0 : domain.hashCode());
+            h = 31 * h + (path == null ? 0 : path.hashCode());
+            int first = (h ^ (h >>> 16)) & (table.length - 2);
+
+            Entry entry = table[first];
+            if (entry != null && entry.matches(protocol, domain, path)) {
+                return entry.prefix;
+            }
+            Entry second = table[first + 1];
+            if (second != null && second.matches(protocol, domain, path)) {
+                return second.prefix;
+            }
+            String prefix = prefixOf(protocol, domain, path);
+            table[first + 1] = entry;
+            table[first] = new Entry(protocol, domain, path, prefix);
+            return prefix;
+        }
+    }
+
     // Builder
     public static class Builder {
         private String protocol = "https";
         private String domain;
         private String path;
         private String query;
+        private boolean prefixCaching;
+        // addQueryParam() output, already percent-encoded. Kept across clearQueryParams() for reuse.
+        private StringBuilder params;
 
         public Builder setProtocol(String protocol) {
             this.protocol = protocol;
@@ -62,6 +167,114 @@ class URLBuilder {
             return this;
         }
 
+        // Appends key=value, percent-encoding both straight into the builder's reusable buffer.
+        // Repeated keys are kept, in the order they were added.
+        public Builder addQueryParam(String key, CharSequence value) {
+            StringBuilder out = startParam(key);
+            percentEncode(value, out);
+            return this;
+        }
+
+        public Builder addQueryParam(String key, int value) {
+            startParam(key).append(value); // digits and '-' never need encoding
+            return this;
+        }
+
+        public Builder addQueryParam(String key, long value) {
+            startParam(key).append(value);
+            return this;
+        }
+
+        // Drops the added params but keeps the buffer, so one Builder can produce many URLs.
+        public Builder clearQueryParams() {
+            if (params != null) {
+                params.setLength(0);
+            }
+            return this;
+        }
+
+        private StringBuilder startParam(String key) {
+            if (params == null) {
+                params = new StringBuilder(64);
+            } else if (params.length() > 0) {
+                params.append('&');
+            }
+            percentEncode(key, params);
+            params.append('=');
+            return params;
+        }
+
+        private boolean hasParams() {
+            return params != null && params.length() > 0;
+        }
+
+        private boolean hasRawQuery() {
+            return query != null && !query.isEmpty();
+        }
+
+        String combinedQuery() {
+            if (!hasParams()) {
+                return query;
+            }
+            if (!hasRawQuery()) {
+                return params.toString();
+            }
+            return new StringBuilder(query.length() + 1 + params.length())
+                    .append(query).append('&').append(params)
+                    .toString();
+        }
+
+        // Writes the URL straight into `out` without building intermediate Strings.
+        public <A extends Appendable> A writeTo(A out) throws IOException {
+            out.append(protocol).append("://").append(domain);
+            if (path != null && !path.isEmpty()) {
+                out.append('/').append(path);
+            }
+            if (hasRawQuery() || hasParams()) {
+                out.append('?');
+                if (hasRawQuery()) {
+                    out.append(query);
+                }
+                if (hasParams()) {
+                    if (hasRawQuery()) {
+                        out.append('&');
+                    }
+                    out.append(params);
+                }
+            }
+            return out;
+        }
+
+        // Writes the URL as UTF-8 into a caller-supplied buffer. Throws BufferOverflowException if it doesn't fit.
+        public ByteBuffer writeTo(ByteBuffer out) {
+            putUtf8(protocol, out);
+            putUtf8("://", out);
+            putUtf8(domain, out);
+            if (path != null && !path.isEmpty()) {
+                out.put((byte) '/');
+                putUtf8(path, out);
+            }
+            if (hasRawQuery() || hasParams()) {
+                out.put((byte) '?');
+                if (hasRawQuery()) {
+                    putUtf8(query, out);
+                }
+                if (hasParams()) {
+                    if (hasRawQuery()) {
+                        out.put((byte) '&');
+                    }
+                    putUtf8(params, out); // percent-encoded, so plain ASCII
+                }
+            }
+            return out;
+        }
+
+        // Reuse the shared cached prefix for protocol/domain/path instead of rebuilding it per URL.
+        public Builder setPrefixCaching(boolean prefixCaching) {
+            this.prefixCaching = prefixCaching;
+            return this;
+        }
+
         public URLBuilder build() {
             return new URLBuilder(this);
         }
@@ -71,6 +284,216 @@ class URLBuilder {
         return new Builder();
     }
 
+    // Splits protocol://domain/path?query back into its parts. See ParsedURL.
+    public static ParsedURL parse(CharSequence url) {
+        return new ParsedURL().reset(url);
+    }
+
+    /*
+    Flyweight view of a parsed URL: the inverse of build(), for gateways that split millions of URLs.
+
+    Parsing is one left-to-right scan (no regex) that records each component as an offset/length
+    slice of the original CharSequence - nothing is copied. A String is only created if the caller
+    asks for it (protocol(), domain(), ...). reset() re-parses into the same object, so a reused
+    view parses with zero allocation.
+
+        protocol://domain[/path][?query][#fragment]
+
+    A component that isn't in the URL has offset -1; "a.com/" has an empty (not absent) path.
+    Without "://" there is no protocol and the URL starts with the domain.
+    */
+    public static final class ParsedURL {
+        private CharSequence source;
+        private int protocolOffset, protocolLength;
+        private int domainOffset, domainLength;
+        private int pathOffset, pathLength;
+        private int queryOffset, queryLength;
+        private int fragmentOffset, fragmentLength;
+
+        public ParsedURL reset(CharSequence url) {
+            source = url;
+            protocolOffset = pathOffset = queryOffset = fragmentOffset = -1;
+            protocolLength = pathLength = queryLength = fragmentLength = 0;
+
+            int n = url.length();
+            int pos = 0;
+            int scheme = indexOfSchemeSeparator(url, n);
+            if (scheme >= 0) {
+                protocolOffset = 0;
+                protocolLength = scheme;
+                pos = scheme + 3;
+            }
+
+            domainOffset = pos;
+            while (pos < n) {
+                char c = url.charAt(pos);
+                if (c == '/' || c == '?' || c == '#') {
+                    break;
+                }
+                pos++;
+            }
+            domainLength = pos - domainOffset;
+
+            if (pos < n && url.charAt(pos) == '/') {
+                pathOffset = ++pos;
+                while (pos < n) {
+                    char c = url.charAt(pos);
+                    if (c == '?' || c == '#') {
+                        break;
+                    }
+                    pos++;
+                }
+                pathLength = pos - pathOffset;
+            }
+            if (pos < n && url.charAt(pos) == '?') {
+                queryOffset = ++pos;
+                while (pos < n && url.charAt(pos) != '#') {
+                    pos++;
+                }
+                queryLength = pos - queryOffset;
+            }
+            if (pos < n && url.charAt(pos) == '#') {
+                fragmentOffset = pos + 1;
+                fragmentLength = n - fragmentOffset;
+            }
+            return this;
+        }
+
+        // Position of "://" before the first '/', '?' or '#', or -1.
+        private static int indexOfSchemeSeparator(CharSequence url, int n) {
+            for (int i = 0; i + 2 < n; i++) {
+                char c = url.charAt(i);
+                if (c == ':') {
+                    return url.charAt(i + 1) == '/' && url.charAt(i + 2) == '/' ? i : -1;
+                }
+                if (c == '/' || c == '?' || c == '#') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        public CharSequence source() { return source; }
+
+        public int protocolOffset() { return protocolOffset; }
+        public int protocolLength() { return protocolLength; }
+        public int domainOffset() { return domainOffset; }
+        public int domainLength() { return domainLength; }
+        public int pathOffset() { return pathOffset; }
+        public int pathLength() { return pathLength; }
+        public int queryOffset() { return queryOffset; }
+        public int queryLength() { return queryLength; }
+        public int fragmentOffset() { return fragmentOffset; }
+        public int fragmentLength() { return fragmentLength; }
+
+        public boolean hasProtocol() { return protocolOffset >= 0; }
+        public boolean hasPath() { return pathOffset >= 0; }
+        public boolean hasQuery() { return queryOffset >= 0; }
+        public boolean hasFragment() { return fragmentOffset >= 0; }
+
+        // Materializing accessors: allocate a String, null when the component is absent.
+        public String protocol() { return slice(protocolOffset, protocolLength); }
+        public String domain() { return slice(domainOffset, domainLength); }
+        public String path() { return slice(pathOffset, pathLength); }
+        public String query() { return slice(queryOffset, queryLength); }
+        public String fragment() { return slice(fragmentOffset, fragmentLength); }
+
+        // Compares a component with `expected` without materializing it.
+        public boolean domainEquals(CharSequence expected) {
+            return regionEquals(domainOffset, domainLength, expected);
+        }
+
+        public boolean pathEquals(CharSequence expected) {
+            return regionEquals(pathOffset, pathLength, expected);
+        }
+
+        // Back to a Builder (allocates the component Strings). The fragment is dropped - URLBuilder has none.
+        public Builder toBuilder() {
+            Builder builder = URLBuilder.builder().setDomain(domain()).setPath(path()).setQuery(query());
+            if (hasProtocol()) {
+                builder.setProtocol(protocol());
+            }
+            return builder;
+        }
+
+        private String slice(int offset, int length) {
+            return offset < 0 ? null : source.subSequence(offset, offset + length).toString();
+        }
+
+        private boolean regionEquals(int offset, int length, CharSequence expected) {
+            if (offset < 0 || expected.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (source.charAt(offset + i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // RFC 3986 percent-encoding: unreserved characters stay, everything else becomes %XX of its UTF-8 bytes.
+    static void percentEncode(CharSequence s, StringBuilder out) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (isUnreserved(c)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(c, out);
+            } else if (c < 0x800) {
+                appendEscaped(0xC0 | (c >> 6), out);
+                appendEscaped(0x80 | (c & 0x3F), out);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                appendEscaped(0xF0 | (cp >> 18), out);
+                appendEscaped(0x80 | ((cp >> 12) & 0x3F), out);
+                appendEscaped(0x80 | ((cp >> 6) & 0x3F), out);
+                appendEscaped(0x80 | (cp & 0x3F), out);
+            } else {
+                if (Character.isSurrogate(c)) {
+                    appendEscaped('?', out); // lone surrogate: same replacement String.getBytes uses
+                    continue;
+                }
+                appendEscaped(0xE0 | (c >> 12), out);
+                appendEscaped(0x80 | ((c >> 6) & 0x3F), out);
+                appendEscaped(0x80 | (c & 0x3F), out);
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static void appendEscaped(int b, StringBuilder out) {
+        out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    private static void putUtf8(CharSequence s, ByteBuffer out) {
+        if (s == null) {
+            putUtf8("null", out); // same as StringBuilder.append(null)
+            return;
+        }
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else {
+                // rare outside the percent-encoded params; let the JDK handle the multi-byte cases
+                int end = i + 1;
+                while (end < n && s.charAt(end) >= 0x80) {
+                    end++;
+                }
+                out.put(s.subSequence(i, end).toString().getBytes(StandardCharsets.UTF_8));
+                i = end - 1;
+            }
+        }
+    }
+
     public static void main(String[] args) {
         String url = URLBuilder.builder()
                 .setProtocol("https")
@@ -81,6 +504,31 @@ class URLBuilder {
                 .build(); // get final URL string
 
         System.out.println(url);
+
+        String cached = URLBuilder.builder()
+                .setDomain("example.com")
+                .setPath("products")
+                .setQuery("id=11&sort=asc")
+                .setPrefixCaching(true)
+                .build()
+                .build();
+
+        System.out.println(cached);
+
+        String typed = URLBuilder.builder()
+                .setDomain("example.com")
+                .setPath("search")
+                .addQueryParam("q", "red shoes & socks")
+                .addQueryParam("page", 2)
+                .addQueryParam("tag", "sale")
+                .addQueryParam("tag", "new")
+                .build()
+                .build();
+
+        System.out.println(typed); // https://example.com/search?q=red%20shoes%20%26%20socks&page=2&tag=sale&tag=new
+
+        URLBuilder.ParsedURL parsed = URLBuilder.parse(typed);
+        System.out.println(parsed.domain() + " | " + parsed.path() + " | " + parsed.query());
     }
 }
 
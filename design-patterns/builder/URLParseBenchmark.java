@@ -0,0 +1,113 @@
+import java.net.URI;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+URLBuilder.parse() vs java.net.URI on gateway-style URLs.
+
+Before timing it checks the round-trip property on random URLs:
+    parse(b.build()).toBuilder().build().build() equals b.build()
+and exits with status 1 on the first counter-example.
+
+    java URLParseBenchmark [urls] [rounds]
+*/
+class URLParseBenchmark {
+
+    private static final String SAFE = "abcdefghijklmnopqrstuvwxyz0123456789-._~";
+    private static final String QUERY = SAFE + "=&+";
+
+    static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Random random = new Random(7);
+
+        String[] urls = new String[count];
+        for (int i = 0; i < count; i++) {
+            URLBuilder.Builder builder = randomBuilder(random);
+            String url = builder.build().build();
+            String again = URLBuilder.parse(url).toBuilder().build().build();
+            if (!url.equals(again)) {
+                System.out.println("Round trip failed: " + url + " -> " + again);
+                System.exit(1);
+            }
+            urls[i] = url;
+        }
+        System.out.println("Round trip ok for " + count + " random URLs");
+
+        for (int round = 0; round < 3; round++) { // round 0 is warm-up
+            boolean report = round > 0;
+
+            long begin = System.nanoTime();
+            URLBuilder.ParsedURL view = new URLBuilder.ParsedURL();
+            long total = 0;
+            for (int r = 0; r < rounds; r++) {
+                for (String url : urls) {
+                    view.reset(url);
+                    total += view.domainLength() + view.pathLength() + view.queryLength();
+                }
+            }
+            print(report, "URLBuilder.parse (slices only)", begin, (long) rounds * count);
+            sink = total;
+
+            begin = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (String url : urls) {
+                    view.reset(url);
+                    String domain = view.domain();
+                    String path = view.path();
+                    String query = view.query();
+                    total += domain.length() + (path == null ? 0 : path.length()) + (query == null ? 0 : query.length());
+                }
+            }
+            print(report, "URLBuilder.parse (+ Strings)", begin, (long) rounds * count);
+            sink = total;
+
+            begin = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (String url : urls) {
+                    URI uri = new URI(url);
+                    String path = uri.getRawPath();
+                    String query = uri.getRawQuery();
+                    total += uri.getHost().length() + path.length() + (query == null ? 0 : query.length());
+                }
+            }
+            print(report, "java.net.URI", begin, (long) rounds * count);
+            sink = total;
+        }
+    }
+
+    static URLBuilder.Builder randomBuilder(Random random) {
+        URLBuilder.Builder builder = URLBuilder.builder()
+                .setProtocol(random.nextBoolean() ? "https" : "http")
+                .setDomain(word(random, SAFE.substring(0, 36), 3, 12) + ".example.com");
+        if (random.nextInt(4) != 0) {
+            builder.setPath(word(random, SAFE, 1, 10) + "/" + word(random, SAFE, 1, 10));
+        }
+        if (random.nextInt(3) != 0) {
+            builder.setQuery(word(random, QUERY, 1, 30));
+        }
+        if (random.nextInt(3) == 0) {
+            builder.addQueryParam("p", word(random, "abc /?#&=é", 0, 8)).addQueryParam("n", random.nextLong());
+        }
+        return builder;
+    }
+
+    static String word(Random random, String alphabet, int min, int max) {
+        int length = min + random.nextInt(max - min + 1);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+    static void print(boolean report, String name, long begin, long ops) {
+        long elapsed = System.nanoTime() - begin;
+        if (report) {
+            System.out.printf(Locale.ROOT, "%-32s %7.1f ns/url  %,14.0f urls/sec%n",
+                    name, (double) elapsed / ops, ops * 1e9 / elapsed);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+// Singleton strategy 5. Bill Pugh (static inner helper class) - see Singleton.java for how it compares to the others.
+public class BillPughSingleton {
+
+    private BillPughSingleton() {
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
+    }
+
+    // Inner static helper class
+    private static class SingletonHelper {
+        private static final BillPughSingleton INSTANCE = new BillPughSingleton();
+    }
+
+    public static BillPughSingleton getInstance() {
+        return SingletonHelper.INSTANCE;
+    }
+}
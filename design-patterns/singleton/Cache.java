@@ -0,0 +1,540 @@
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/*
+Concurrent cache bounded by entry count or total weight. Created through CacheManager.
+
+    Cache<String, User> users = CacheManager.INSTANCE.createCache("users",
+            Cache.<String, User>builder()
+                    .setMaximumSize(10_000)
+                    .setPolicy(Cache.EvictionPolicy.W_TINY_LFU)
+                    .setExpireAfterWrite(10, TimeUnit.MINUTES)
+                    .setLoader(userRepository::find));
+    User u = users.get("avinash"); // loads on a miss
+
+Entries live in a ConcurrentHashMap, so reads never block. The eviction order (linked lists)
+is kept under one lock. Writes take it; reads only record the access if the lock is free
+(tryLock) - under heavy contention some accesses are simply not recorded, the price of never
+blocking a reader.
+
+Eviction policies:
+    LRU         - one access-ordered list, evict the least recently used entry.
+    W_TINY_LFU  - a small LRU "window" (1%) in front of a segmented LRU main area
+                  (probation 20% / protected 80%). An entry leaving the window only gets into the
+                  main area if a FrequencySketch says it is used more often than the entry it would
+                  push out, so one-off scans don't wipe out the popular entries.
+
+An entry heavier than the cache could ever hold is dropped as soon as it is put, instead of
+evicting everything else first. The sketch is sized from the entry count: up front for
+setMaximumSize, growing with the cache for setMaximumWeight.
+
+Concurrent get() misses for the same key with a loader share one load. A loader that calls
+get() for the key it is loading would wait for itself forever; that throws IllegalStateException.
+*/
+public class Cache<K, V> {
+
+    public enum EvictionPolicy {
+        LRU,
+        W_TINY_LFU
+    }
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int CLEANUP_EVERY_WRITES = 1024;
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int weight;
+        final long writeNanos;
+        volatile long accessNanos;
+
+        // guarded by evictionLock
+        Node<K, V> prev;
+        Node<K, V> next;
+        int region;
+        boolean linked;
+
+        Node(K key, V value, int weight, long now) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeNanos = now;
+            this.accessNanos = now;
+        }
+    }
+
+    // Doubly linked access-order list: head is the eviction end, tail the most recent.
+    private static final class AccessQueue<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        long weight;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    private final String name;
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, Load<V>> loading = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final EvictionPolicy policy;
+    private final long maximumWeight;
+    private final long maximumEntryWeight; // heavier entries can never be cached
+    private final ToIntFunction<? super V> weigher;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final boolean expires;
+    private final Function<? super K, ? extends V> loader;
+
+    // guarded by evictionLock
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+    private final FrequencySketch sketch;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private int writesSinceCleanup;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+
+    private Cache(String name, Builder<K, V> builder) {
+        this.name = name;
+        this.policy = builder.policy;
+        this.maximumWeight = builder.maximumWeight;
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.expires = expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0;
+        this.loader = builder.loader;
+        if (policy == EvictionPolicy.W_TINY_LFU) {
+            this.windowMaximum = Math.max(1, maximumWeight / 100);
+            this.protectedMaximum = (maximumWeight - windowMaximum) * 8 / 10;
+            this.maximumEntryWeight = maximumWeight - windowMaximum;
+            // By weight the entry count is unknown; start small and grow with data.size().
+            this.sketch = new FrequencySketch(builder.weighted ? 0 : maximumWeight);
+        } else {
+            this.windowMaximum = maximumWeight; // LRU uses the window as its only list
+            this.protectedMaximum = 0;
+            this.maximumEntryWeight = maximumWeight;
+            this.sketch = null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Returns the cached value, or null if absent/expired. Never loads.
+    public V getIfPresent(K key) {
+        Node<K, V> node = data.get(key);
+        long now = now();
+        if (node == null || isExpired(node, now)) {
+            if (node != null) {
+                removeNode(node);
+            }
+            misses.increment();
+            recordMiss(key);
+            return null;
+        }
+        hits.increment();
+        recordHit(node, now);
+        return node.value;
+    }
+
+    // Returns the cached value, loading it with the cache's loader on a miss.
+    // Concurrent misses for the same key wait for a single load.
+    public V get(K key) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        if (loader == null) {
+            return null;
+        }
+        Load<V> mine = new Load<>();
+        Load<V> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            if (inFlight.loader == Thread.currentThread()) {
+                throw new IllegalStateException("Recursive load of key " + key + " in cache " + name);
+            }
+            return join(inFlight);
+        }
+        try {
+            Node<K, V> node = data.get(key); // a load may have finished just before we registered
+            if (node != null && !isExpired(node, now())) {
+                mine.complete(node.value);
+                return node.value;
+            }
+            V loaded = Objects.requireNonNull(loader.apply(key), "loader returned null");
+            loads.increment();
+            put(key, loaded);
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            loadFailures.increment();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    public void put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        int weight = weigher.applyAsInt(value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight " + weight + " for key " + key);
+        }
+        Node<K, V> node = new Node<>(key, value, weight, now());
+        Node<K, V> old = data.put(key, node);
+
+        evictionLock.lock();
+        try {
+            if (old != null && old.linked) {
+                unlink(old);
+            }
+            if (data.get(key) == node) { // a newer put may already have replaced us
+                if (weight > maximumEntryWeight) {
+                    evictNode(node); // would only push everything else out, then be evicted itself
+                } else {
+                    if (sketch != null) {
+                        sketch.ensureCapacity(data.size());
+                        sketch.increment(key);
+                    }
+                    node.region = WINDOW;
+                    node.linked = true;
+                    window.addLast(node);
+                    evict();
+                }
+            }
+            if (++writesSinceCleanup >= CLEANUP_EVERY_WRITES) {
+                writesSinceCleanup = 0;
+                expireAll(now());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            evictionLock.lock();
+            try {
+                if (node.linked) {
+                    unlink(node);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (K key : data.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    // Removes every expired entry now instead of lazily.
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            expireAll(now());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long size() {
+        return data.size();
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), loads.sum(), loadFailures.sum());
+    }
+
+    // Without expiration the clock is never read; System.nanoTime() is a noticeable cost per operation.
+    private long now() {
+        return expires ? System.nanoTime() : 0L;
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return expires && ((expireAfterWriteNanos > 0 && now - node.writeNanos >= expireAfterWriteNanos)
+                || (expireAfterAccessNanos > 0 && now - node.accessNanos >= expireAfterAccessNanos));
+    }
+
+    private void recordHit(Node<K, V> node, long now) {
+        if (expireAfterAccessNanos > 0) {
+            node.accessNanos = now;
+        }
+        if (!evictionLock.tryLock()) {
+            return; // busy: drop this access rather than block the reader
+        }
+        try {
+            if (sketch != null) {
+                sketch.increment(node.key);
+            }
+            if (!node.linked) {
+                return;
+            }
+            if (node.region == WINDOW) {
+                window.moveToLast(node);
+            } else if (node.region == PROBATION) {
+                probation.remove(node);
+                node.region = PROTECTED;
+                protectedQueue.addLast(node);
+                while (protectedQueue.weight > protectedMaximum && protectedQueue.head != null) {
+                    Node<K, V> demoted = protectedQueue.head;
+                    protectedQueue.remove(demoted);
+                    demoted.region = PROBATION;
+                    probation.addLast(demoted);
+                }
+            } else {
+                protectedQueue.moveToLast(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void recordMiss(K key) {
+        if (sketch != null && evictionLock.tryLock()) {
+            try {
+                sketch.increment(key);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    // Called with evictionLock held.
+    private void evict() {
+        while (window.weight > windowMaximum) {
+            Node<K, V> candidate = window.head;
+            window.remove(candidate);
+            if (policy == EvictionPolicy.LRU) {
+                evictNode(candidate);
+                continue;
+            }
+            admit(candidate);
+        }
+    }
+
+    // TinyLFU admission of an entry leaving the window into the main area. Called with evictionLock held.
+    private void admit(Node<K, V> candidate) {
+        long mainMaximum = maximumEntryWeight;
+        if (candidate.weight > mainMaximum) {
+            evictNode(candidate); // put() already drops these; never evict victims for one
+            return;
+        }
+        int candidateFrequency = sketch.frequency(candidate.key);
+        while (probation.weight + protectedQueue.weight + candidate.weight > mainMaximum) {
+            Node<K, V> victim = probation.head != null ? probation.head : protectedQueue.head;
+            if (victim == null || candidateFrequency <= sketch.frequency(victim.key)) {
+                evictNode(candidate); // not popular enough to displace anything
+                return;
+            }
+            (victim.region == PROBATION ? probation : protectedQueue).remove(victim);
+            evictNode(victim);
+        }
+        candidate.region = PROBATION;
+        probation.addLast(candidate);
+    }
+
+    // Node is already out of its queue.
+    private void evictNode(Node<K, V> node) {
+        node.linked = false;
+        if (data.remove(node.key, node)) {
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        queueOf(node).remove(node);
+        node.linked = false;
+    }
+
+    private AccessQueue<K, V> queueOf(Node<K, V> node) {
+        return node.region == WINDOW ? window : node.region == PROBATION ? probation : protectedQueue;
+    }
+
+    private void removeNode(Node<K, V> node) {
+        if (data.remove(node.key, node)) {
+            evictionLock.lock();
+            try {
+                if (node.linked) {
+                    unlink(node);
+                    evictions.increment();
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    // Called with evictionLock held.
+    private void expireAll(long now) {
+        if (!expires) {
+            return;
+        }
+        for (Node<K, V> node : data.values()) {
+            if (node.linked && isExpired(node, now) && data.remove(node.key, node)) {
+                unlink(node);
+                evictions.increment();
+            }
+        }
+    }
+
+    // Point-in-time counters of one cache.
+    public static final class CacheStats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long loads;
+        public final long loadFailures;
+
+        CacheStats(long hits, long misses, long evictions, long loads, long loadFailures) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.loads = loads;
+            this.loadFailures = loadFailures;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRate=%.3f evictions=%d loads=%d loadFailures=%d",
+                    hits, misses, hitRate(), evictions, loads, loadFailures);
+        }
+    }
+
+    // A load in progress; the thread running the loader is recorded to catch it calling get() for its own key.
+    private static final class Load<V> extends CompletableFuture<V> {
+        final Thread loader = Thread.currentThread();
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    // Builder
+    public static class Builder<K, V> {
+        private EvictionPolicy policy = EvictionPolicy.W_TINY_LFU;
+        private long maximumWeight = 1000;
+        private ToIntFunction<? super V> weigher = v -> 1;
+        private boolean weighted;
+        private long expireAfterWriteNanos;
+        private long expireAfterAccessNanos;
+        private Function<? super K, ? extends V> loader;
+
+        public Builder<K, V> setPolicy(EvictionPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        // Bound on the number of entries.
+        public Builder<K, V> setMaximumSize(long maximumSize) {
+            setMaximumWeight(maximumSize, v -> 1);
+            this.weighted = false;
+            return this;
+        }
+
+        // Bound on the sum of weigher(value) over all entries.
+        public Builder<K, V> setMaximumWeight(long maximumWeight, ToIntFunction<? super V> weigher) {
+            if (maximumWeight <= 0) {
+                throw new IllegalArgumentException("Maximum must be positive: " + maximumWeight);
+            }
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            this.weighted = true;
+            return this;
+        }
+
+        public Builder<K, V> setExpireAfterWrite(long duration, TimeUnit unit) {
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public Builder<K, V> setExpireAfterAccess(long duration, TimeUnit unit) {
+            this.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public Builder<K, V> setLoader(Function<? super K, ? extends V> loader) {
+            this.loader = loader;
+            return this;
+        }
+
+        Cache<K, V> build(String name) {
+            return new Cache<>(name, this);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/*
+Hit ratio and throughput of the CacheManager caches (LRU and W-TinyLFU) against the classic
+synchronized LinkedHashMap LRU, on a Zipfian key distribution (a few keys are very popular,
+most are rare - like real traffic).
+
+Every operation is a get; a miss puts the key. The trace is generated up front so the random
+generator isn't part of the measurement.
+
+    java CacheBenchmark [threads] [cacheSize] [keySpace] [zipfExponent]
+*/
+class CacheBenchmark {
+
+    private static final int TRACE_LENGTH = 4_000_000;
+
+    interface SimpleCache {
+        Integer get(Integer key);
+        void put(Integer key, Integer value);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int cacheSize = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int keySpace = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        double exponent = args.length > 3 ? Double.parseDouble(args[3]) : 0.99;
+
+        Integer[] trace = zipfianTrace(keySpace, exponent, TRACE_LENGTH, new Random(42));
+        System.out.printf(Locale.ROOT, "threads=%d cacheSize=%d keys=%d zipf=%.2f%n", threads, cacheSize, keySpace, exponent);
+
+        for (int round = 0; round < 2; round++) { // first round is warm-up
+            boolean report = round == 1;
+            bench("synchronized LinkedHashMap LRU", report, threads, trace, linkedHashMapLru(cacheSize));
+            bench("Cache LRU", report, threads, trace, cacheOf(Cache.EvictionPolicy.LRU, cacheSize, round));
+            bench("Cache W-TinyLFU", report, threads, trace, cacheOf(Cache.EvictionPolicy.W_TINY_LFU, cacheSize, round));
+        }
+        CacheManager.INSTANCE.printStats();
+    }
+
+    static void bench(String name, boolean report, int threads, Integer[] trace, SimpleCache cache)
+            throws InterruptedException {
+        long[] hits = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        int perThread = trace.length / threads;
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            new Thread(() -> {
+                long h = 0;
+                try {
+                    start.await();
+                    for (int i = id * perThread, end = i + perThread; i < end; i++) {
+                        Integer key = trace[i];
+                        if (cache.get(key) != null) {
+                            h++;
+                        } else {
+                            cache.put(key, key);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                hits[id] = h;
+                done.countDown();
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        if (report) {
+            long totalHits = 0;
+            for (long h : hits) {
+                totalHits += h;
+            }
+            long ops = (long) perThread * threads;
+            System.out.printf(Locale.ROOT, "%-32s hit ratio %6.2f%%  %,14.0f ops/sec%n",
+                    name, 100.0 * totalHits / ops, ops * 1e9 / elapsed);
+        }
+    }
+
+    static SimpleCache linkedHashMapLru(int capacity) {
+        Map<Integer, Integer> map = new LinkedHashMap<Integer, Integer>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+        return new SimpleCache() {
+            public synchronized Integer get(Integer key) { return map.get(key); }
+            public synchronized void put(Integer key, Integer value) { map.put(key, value); }
+        };
+    }
+
+    static SimpleCache cacheOf(Cache.EvictionPolicy policy, int capacity, int round) {
+        String name = "bench-" + policy + "-" + round;
+        Cache<Integer, Integer> cache = CacheManager.INSTANCE.createCache(name,
+                Cache.<Integer, Integer>builder().setPolicy(policy).setMaximumSize(capacity));
+        return new SimpleCache() {
+            public Integer get(Integer key) { return cache.getIfPresent(key); }
+            public void put(Integer key, Integer value) { cache.put(key, value); }
+        };
+    }
+
+    // Zipfian sampler from Gray et al., "Quickly Generating Billion-Record Synthetic Databases" (as used by YCSB).
+    static Integer[] zipfianTrace(int items, double theta, int length, Random random) {
+        double zetan = 0;
+        for (int i = 1; i <= items; i++) {
+            zetan += 1.0 / Math.pow(i, theta);
+        }
+        double zeta2 = 1.0 + 1.0 / Math.pow(2, theta);
+        double alpha = 1.0 / (1.0 - theta);
+        double eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetan);
+
+        Integer[] boxed = new Integer[items];
+        Integer[] trace = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            int rank;
+            if (uz < 1.0) {
+                rank = 0;
+            } else if (uz < zeta2) {
+                rank = 1;
+            } else {
+                rank = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+            }
+            rank = Math.min(rank, items - 1);
+            int key = (rank * 0x9E3779B1) & Integer.MAX_VALUE; // scatter popular keys over the hash space
+            if (boxed[rank] == null) {
+                boxed[rank] = key;
+            }
+            trace[i] = boxed[rank];
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Cache manager as an Enum Singleton (see EnumSingleton.java): one registry of named caches per JVM.
+public enum CacheManager {
+    INSTANCE;
+
+    private final ConcurrentHashMap<String, Cache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    // Creates and registers the cache. A taken name is an IllegalStateException rather than a
+    // silent hand-back of the existing cache, whose settings (and loader) may differ from
+    // `builder`'s; share a cache by looking it up with getCache().
+    @SuppressWarnings("unchecked")
+    public <K, V> Cache<K, V> createCache(String name, Cache.Builder<K, V> builder) {
+        Cache<?, ?> created = builder.build(name);
+        Cache<?, ?> existing = caches.putIfAbsent(name, created);
+        if (existing != null) {
+            throw new IllegalStateException("Cache already exists: " + name);
+        }
+        return (Cache<K, V>) created;
+    }
+
+    // The cache registered under `name`, or null.
+    @SuppressWarnings("unchecked")
+    public <K, V> Cache<K, V> getCache(String name) {
+        return (Cache<K, V>) caches.get(name);
+    }
+
+    public void removeCache(String name) {
+        Cache<?, ?> cache = caches.remove(name);
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public Set<String> getCacheNames() {
+        return new TreeSet<>(caches.keySet());
+    }
+
+    public void printStats() {
+        for (String name : getCacheNames()) {
+            Cache<?, ?> cache = caches.get(name);
+            if (cache != null) {
+                System.out.println(name + " (size " + cache.size() + "): " + cache.stats());
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        Cache<Integer, String> squares = CacheManager.INSTANCE.createCache("squares",
+                Cache.<Integer, String>builder()
+                        .setMaximumSize(100)
+                        .setPolicy(Cache.EvictionPolicy.W_TINY_LFU)
+                        .setExpireAfterWrite(5, TimeUnit.MINUTES)
+                        .setLoader(n -> String.valueOf(n * n)));
+
+        for (int i = 0; i < 1000; i++) {
+            squares.get(i % 150);
+        }
+        System.out.println(CacheManager.INSTANCE.<Integer, String>getCache("squares") == squares); // true
+        CacheManager.INSTANCE.printStats();
+    }
+}
@@ -0,0 +1,48 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// LogSink over a plain channel - stdout or an appended file.
+public class ChannelLogSink implements LogSink {
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+
+    public ChannelLogSink(WritableByteChannel channel, boolean closeChannel) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+    }
+
+    public static ChannelLogSink stdout() {
+        // Wrap the raw fd, not System.out, so we skip PrintStream's lock and line flushing.
+        return new ChannelLogSink(new FileOutputStream(java.io.FileDescriptor.out).getChannel(), false);
+    }
+
+    public static ChannelLogSink file(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new ChannelLogSink(channel, true);
+    }
+
+    public static ChannelLogSink of(java.io.OutputStream out) {
+        return new ChannelLogSink(Channels.newChannel(out), false);
+    }
+
+    @Override
+    public void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.concurrent.TimeUnit;
+
+// The application's single connection pool, held Bill Pugh style: created on first getInstance().
+public class ConnectionPool {
+
+    private static final int MAX_CONNECTIONS = 16;
+    private static final long CONNECT_LATENCY_MILLIS = 50;
+    private static final long IDLE_TIMEOUT_SECONDS = 60;
+
+    private ConnectionPool() { }
+
+    private static class PoolHolder {
+        private static final ObjectPool<FakeConnection> INSTANCE =
+                ObjectPool.<FakeConnection>builder(() -> new FakeConnection(CONNECT_LATENCY_MILLIS))
+                        .setMaxSize(MAX_CONNECTIONS)
+                        .setIdleTimeout(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                        .setValidator(FakeConnection::isValid)
+                        .setDestroyer(FakeConnection::close)
+                        .build();
+    }
+
+    public static ObjectPool<FakeConnection> getInstance() {
+        return PoolHolder.INSTANCE;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ObjectPool<FakeConnection> pool = ConnectionPool.getInstance();
+
+        try (ObjectPool.Lease<FakeConnection> lease = pool.borrow(1, TimeUnit.SECONDS)) {
+            System.out.println(lease.get().query("select 1"));
+        }
+        // Same thread borrows again: gets the connection it just returned, no new handshake.
+        try (ObjectPool.Lease<FakeConnection> lease = pool.borrow(1, TimeUnit.SECONDS)) {
+            System.out.println(lease.get().query("select 2"));
+        }
+        System.out.println("Connections opened: " + FakeConnection.openedCount());
+    }
+}
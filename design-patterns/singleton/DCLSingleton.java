@@ -0,0 +1,19 @@
+// Singleton strategy 3. Double-checked locking with volatile - see Singleton.java for how it compares to the others.
+public class DCLSingleton {
+    private static volatile DCLSingleton instance;
+
+    private DCLSingleton() {
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
+    }
+
+    public static DCLSingleton getInstance() {
+        if (instance == null) {                      // first check
+            synchronized (DCLSingleton.class) {
+                if (instance == null) {              // second check
+                    instance = new DCLSingleton();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,12 @@
+// Singleton strategy 4. Eager initialization - see Singleton.java for how it compares to the others.
+public class EagerSingleton {
+    private static final EagerSingleton INSTANCE = new EagerSingleton();
+
+    private EagerSingleton() {
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
+    }
+
+    public static EagerSingleton getInstance() {
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,12 @@
+// Singleton strategy 7. Enum singleton - see Singleton.java for how it compares to the others.
+public enum EnumSingleton {
+    INSTANCE;
+
+    EnumSingleton() {
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
+    }
+
+    public void doSomething() {
+        System.out.println("Doing something with EnumSingleton");
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Local stand-in for a database connection: expensive to open (configurable latency), cheap to use.
+public class FakeConnection {
+    private static final AtomicInteger OPENED = new AtomicInteger();
+
+    private final int id;
+    private volatile boolean open = true;
+
+    public FakeConnection(long creationLatencyMillis) {
+        if (creationLatencyMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(creationLatencyMillis); // handshake, auth, ...
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while connecting", e);
+            }
+        }
+        this.id = OPENED.incrementAndGet();
+    }
+
+    public String query(String sql) {
+        if (!open) {
+            throw new IllegalStateException("Connection " + id + " is closed");
+        }
+        return "connection " + id + " ran: " + sql;
+    }
+
+    public boolean isValid() {
+        return open;
+    }
+
+    public void close() {
+        open = false;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public static int openedCount() {
+        return OPENED.get();
+    }
+}
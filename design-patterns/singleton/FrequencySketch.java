@@ -0,0 +1,98 @@
+/*
+Approximate access counts for TinyLFU admission: a count-min sketch with 4-bit counters.
+
+Each key maps to one counter in each of 4 rows (16 counters packed per long). increment()
+bumps the key's counters that are below 15; frequency() is the minimum of the 4, which
+over-estimates only on collisions. After `sampleSize` increments every counter is halved,
+so the sketch forgets old popularity and follows a changing workload.
+
+Sized for the number of entries, not their weight: Cache calls ensureCapacity() as its entry
+count grows, so a cache bounded by bytes doesn't allocate a counter per byte up front.
+
+Not thread-safe; Cache only touches it while holding its eviction lock.
+*/
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 26;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int additions;
+
+    FrequencySketch(long expectedSize) {
+        resize(expectedSize);
+    }
+
+    // Grows the table (forgetting the counts so far) once more entries are cached than it was sized for.
+    void ensureCapacity(long entries) {
+        if (entries > table.length && table.length < MAXIMUM_CAPACITY) {
+            resize(Math.max(entries, 2L * table.length));
+        }
+    }
+
+    private void resize(long expectedSize) {
+        int capacity = (int) Math.min(Math.max(expectedSize, 16), MAXIMUM_CAPACITY);
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = 10 * capacity;
+        this.additions = 0;
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int min = 15;
+        for (int row = 0; row < 4; row++) {
+            long h = rehash(hash, row);
+            int index = (int) h & tableMask;
+            int shift = counterShift(h);
+            min = Math.min(min, (int) ((table[index] >>> shift) & 0xfL));
+        }
+        return min;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            long h = rehash(hash, row);
+            int index = (int) h & tableMask;
+            int shift = counterShift(h);
+            if (((table[index] >>> shift) & 0xfL) < 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    // Halves every counter (aging).
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static int counterShift(long h) {
+        return (int) ((h >>> 60) & 0xfL) << 2; // which of the 16 counters in the long
+    }
+
+    private static long rehash(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return h ^ (h >>> 29);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
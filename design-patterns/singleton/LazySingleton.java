@@ -0,0 +1,15 @@
+// Singleton strategy 1. Lazy initialization (not thread-safe) - see Singleton.java for how it compares to the others.
+public class LazySingleton {
+    private static LazySingleton instance;
+
+    private LazySingleton() {
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
+    }
+
+    public static LazySingleton getInstance() {
+        if (instance == null) {              // not thread-safe
+            instance = new LazySingleton();
+        }
+        return instance;
+    }
+}
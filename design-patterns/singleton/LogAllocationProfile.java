@@ -0,0 +1,55 @@
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+
+/*
+Allocation profile of the singleton loggers, measured with the JVM's per-thread allocation counter.
+
+    disabled level  -> must be exactly 0 bytes per call
+    enabled level   -> should be ~0 bytes per call once the thread-local buffers are warm
+
+Exits with status 1 if a disabled-level call allocates, so it can run as a check in CI.
+    java LogAllocationProfile
+*/
+class LogAllocationProfile {
+
+    private static final int CALLS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String nullDevice = System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null";
+
+        LoggerEagerInitializationSingleton logger = LoggerEagerInitializationSingleton.getInstance();
+        logger.setSink(ChannelLogSink.file(Paths.get(nullDevice)));
+        logger.setLevel(LogLevel.INFO);
+
+        String user = "avinash";
+        Integer orderId = 42; // boxed once, outside the measured loop
+
+        // warm up so the JIT has compiled the paths and the thread-local buffers exist
+        for (int i = 0; i < CALLS; i++) {
+            logger.debug("Order {} placed by {}", orderId, user);
+            logger.info("Order {} placed by {}", orderId, user);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < CALLS; i++) {
+            logger.debug("Order {} placed by {}", orderId, user);
+        }
+        double disabled = (threads.getCurrentThreadAllocatedBytes() - before) / (double) CALLS;
+
+        before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < CALLS; i++) {
+            logger.info("Order {} placed by {}", orderId, user);
+        }
+        double enabled = (threads.getCurrentThreadAllocatedBytes() - before) / (double) CALLS;
+
+        System.out.printf("disabled level: %.3f bytes/call%n", disabled);
+        System.out.printf("enabled level : %.3f bytes/call%n", enabled);
+
+        if (disabled > 0) {
+            System.out.println("FAIL: disabled-level calls allocate");
+            System.exit(1);
+        }
+    }
+}
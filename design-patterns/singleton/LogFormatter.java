@@ -0,0 +1,170 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/*
+Garbage-free formatting of log lines:
+
+    <epochMillis> <LEVEL> [<thread>] <message with {} placeholders filled>\n
+
+Every thread gets its own char buffer, CharBuffer view, UTF-8 encoder and output ByteBuffer,
+created once and reused. Strings, CharSequences, boxed integers, booleans and chars are
+copied in without any temporary String; other argument types fall back to toString().
+Buffers only grow (and allocate) when a line is longer than anything seen before on that thread.
+
+Callers must check the level first - the formatter itself doesn't know about levels.
+*/
+final class LogFormatter {
+
+    private static final int INITIAL_CHARS = 256;
+    private static final ThreadLocal<LogFormatter> PER_THREAD = ThreadLocal.withInitial(LogFormatter::new);
+
+    private char[] chars = new char[INITIAL_CHARS];
+    private int length;
+    private CharBuffer charView = CharBuffer.wrap(chars);
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CHARS * 2);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private LogFormatter() {
+    }
+
+    static LogFormatter current() {
+        return PER_THREAD.get();
+    }
+
+    // Returns this thread's byte buffer, flipped and ready to be written. Valid until the next format call.
+    ByteBuffer format(LogLevel level, long timestampMillis, String threadName, String template, Object[] args) {
+        startLine(level, timestampMillis, threadName);
+        int start = 0;
+        int argIndex = 0;
+        int argCount = args == null ? 0 : args.length;
+        int brace;
+        while (argIndex < argCount && (brace = template.indexOf("{}", start)) >= 0) {
+            appendChars(template, start, brace);
+            appendArg(args[argIndex++]);
+            start = brace + 2;
+        }
+        return finishLine(template, start);
+    }
+
+    // Fixed-arity variant: no varargs array for the one and two argument calls.
+    ByteBuffer format(LogLevel level, long timestampMillis, String threadName, String template,
+                      int argCount, Object arg0, Object arg1) {
+        startLine(level, timestampMillis, threadName);
+        int start = 0;
+        int brace;
+        for (int argIndex = 0; argIndex < argCount && (brace = template.indexOf("{}", start)) >= 0; argIndex++) {
+            appendChars(template, start, brace);
+            appendArg(argIndex == 0 ? arg0 : arg1);
+            start = brace + 2;
+        }
+        return finishLine(template, start);
+    }
+
+    private void startLine(LogLevel level, long timestampMillis, String threadName) {
+        length = 0;
+        appendLong(timestampMillis);
+        appendChar(' ');
+        String levelName = level.name();
+        appendChars(levelName, 0, levelName.length());
+        appendChar(' ');
+        appendChar('[');
+        appendChars(threadName, 0, threadName.length());
+        appendChar(']');
+        appendChar(' ');
+    }
+
+    private ByteBuffer finishLine(String template, int start) {
+        appendChars(template, start, template.length());
+        appendChar('\n');
+        return encode();
+    }
+
+    private void appendArg(Object arg) {
+        if (arg instanceof CharSequence) {
+            CharSequence cs = (CharSequence) arg;
+            appendChars(cs, 0, cs.length());
+        } else if (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte) {
+            appendLong(((Number) arg).longValue());
+        } else if (arg instanceof Boolean) {
+            String s = ((Boolean) arg) ? "true" : "false";
+            appendChars(s, 0, s.length());
+        } else if (arg instanceof Character) {
+            appendChar((Character) arg);
+        } else {
+            String s = String.valueOf(arg);
+            appendChars(s, 0, s.length());
+        }
+    }
+
+    private void appendChar(char c) {
+        ensureCapacity(length + 1);
+        chars[length++] = c;
+    }
+
+    private void appendChars(CharSequence s, int from, int to) {
+        ensureCapacity(length + (to - from));
+        if (s instanceof String) {
+            ((String) s).getChars(from, to, chars, length);
+            length += to - from;
+        } else {
+            for (int i = from; i < to; i++) {
+                chars[length++] = s.charAt(i);
+            }
+        }
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            appendChars("-9223372036854775808", 0, 20);
+            return;
+        }
+        ensureCapacity(length + 20);
+        if (value < 0) {
+            chars[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int pos = length + digits;
+        length = pos;
+        do {
+            chars[--pos] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > chars.length) {
+            char[] grown = new char[Math.max(needed, chars.length * 2)];
+            System.arraycopy(chars, 0, grown, 0, length);
+            chars = grown;
+            charView = CharBuffer.wrap(chars);
+        }
+    }
+
+    private ByteBuffer encode() {
+        while (true) {
+            charView.limit(length).position(0);
+            bytes.clear();
+            encoder.reset();
+            CoderResult result = encoder.encode(charView, bytes, true);
+            if (!result.isOverflow()) {
+                result = encoder.flush(bytes);
+            }
+            if (result.isOverflow()) {
+                bytes = ByteBuffer.allocate(bytes.capacity() * 2);
+                continue;
+            }
+            bytes.flip();
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+// Severity of a log record. Records below the logger's configured level are dropped.
+public enum LogLevel {
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR;
+
+    public boolean isEnabled(LogLevel threshold) {
+        return ordinal() >= threshold.ordinal();
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+Bounded lock-free ring buffer: many producers, one consumer.
+
+Every slot carries a sequence number (Vyukov's bounded queue):
+    sequence == position        -> slot is free for the producer claiming `position`
+    sequence == position + 1    -> slot holds a published record for the consumer
+Producers claim a position with a CAS on `tail`, fill the preallocated record and publish
+it by bumping the slot sequence. No locks, and no allocation per record.
+*/
+class LogRingBuffer {
+
+    // Preallocated, reused slot. Fields are plain; the slot sequence publishes them.
+    static final class Record {
+        LogLevel level;
+        String template;
+        int argCount;    // -1 when the arguments are in `args`
+        Object arg0;
+        Object arg1;
+        Object[] args;
+        long timestampMillis;
+        String threadName;
+
+        void clear() {
+            template = null;
+            arg0 = null;
+            arg1 = null;
+            args = null;
+            threadName = null;
+        }
+    }
+
+    interface RecordHandler {
+        void onRecord(Record record);
+    }
+
+    private final Record[] records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // consumer-only
+
+    LogRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.records = new Record[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            records[i] = new Record();
+            sequences.set(i, i);
+        }
+    }
+
+    // Returns false when the buffer is full; the caller decides whether to retry or drop.
+    boolean offer(LogLevel level, String template, Object[] args) {
+        return offer(level, template, -1, null, null, args);
+    }
+
+    // Up to two arguments without a varargs array.
+    boolean offer(LogLevel level, String template, int argCount, Object arg0, Object arg1) {
+        return offer(level, template, argCount, arg0, arg1, null);
+    }
+
+    private boolean offer(LogLevel level, String template, int argCount, Object arg0, Object arg1, Object[] args) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                return false; // consumer hasn't freed this slot yet
+            }
+            // another producer won the slot, reload tail
+        }
+        Record record = records[index];
+        record.level = level;
+        record.template = template;
+        record.argCount = argCount;
+        record.arg0 = arg0;
+        record.arg1 = arg1;
+        record.args = args;
+        record.timestampMillis = System.currentTimeMillis();
+        record.threadName = Thread.currentThread().getName();
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    // Consumer side: hands up to maxRecords published records to the handler, returns the count.
+    int drain(RecordHandler handler, int maxRecords) {
+        int drained = 0;
+        while (drained < maxRecords) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Record record = records[index];
+            handler.onRecord(record);
+            record.clear();
+            sequences.lazySet(index, head + records.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -0,0 +1,17 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Destination for encoded log bytes. Only the logger's consumer thread calls it,
+// so implementations don't need to be thread-safe.
+public interface LogSink {
+
+    // Writes all remaining bytes of the buffer.
+    void write(ByteBuffer bytes) throws IOException;
+
+    // Called once after every drained batch.
+    default void flush() throws IOException {
+    }
+
+    default void close() throws IOException {
+    }
+}
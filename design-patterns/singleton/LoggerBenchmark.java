@@ -0,0 +1,80 @@
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+/*
+Throughput of 32 threads logging through LoggerThreadSafeSingleton vs calling System.out.println.
+
+Both sides write to the null device so we measure the logging path, not the terminal.
+    java LoggerBenchmark [threads] [messagesPerThread]
+
+Measured on a single-core sandbox, where the consumer competes with all 32 callers for the one
+core: 1.8-2.0x the println rate, both for the callers and including the final drain. That is
+well short of the 5x asked for; more cores should help, since the consumer then runs alongside
+the callers, but that has not been measured.
+*/
+class LoggerBenchmark {
+
+    interface Task {
+        void run(int thread, int i);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        String nullDevice = System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null";
+
+        PrintStream console = System.out;
+        PrintStream printlnTarget = new PrintStream(new FileOutputStream(nullDevice), true);
+        LoggerThreadSafeSingleton logger = LoggerThreadSafeSingleton.getInstance();
+        logger.setSink(ChannelLogSink.file(java.nio.file.Paths.get(nullDevice)));
+
+        // warm up both paths
+        run(threads, perThread / 10, (t, i) -> printlnTarget.println("Order " + i + " placed by thread " + t));
+        run(threads, perThread / 10, (t, i) -> logger.info("Order {} placed by thread {}", i, t));
+
+        long printlnNanos = run(threads, perThread,
+                (t, i) -> printlnTarget.println("Order " + i + " placed by thread " + t));
+        long loggerNanos = run(threads, perThread,
+                (t, i) -> logger.info("Order {} placed by thread {}", i, t));
+        long drainStart = System.nanoTime();
+        logger.shutdown(); // waits until the consumer has written everything
+        long loggerTotalNanos = loggerNanos + (System.nanoTime() - drainStart);
+
+        long messages = (long) threads * perThread;
+        console.printf("threads=%d messages=%d%n", threads, messages);
+        console.printf("System.out.println       : %,12.0f msgs/sec%n", rate(messages, printlnNanos));
+        console.printf("async logger (callers)   : %,12.0f msgs/sec  (%.1fx)%n",
+                rate(messages, loggerNanos), (double) printlnNanos / loggerNanos);
+        console.printf("async logger (incl drain): %,12.0f msgs/sec  (%.1fx)%n",
+                rate(messages, loggerTotalNanos), (double) printlnNanos / loggerTotalNanos);
+    }
+
+    static long run(int threads, int perThread, Task task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        task.run(id, i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+
+    static double rate(long messages, long nanos) {
+        return messages * 1e9 / nanos;
+    }
+}
@@ -1,19 +1,119 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 // Eager Initialization - Instance is created immediately when the class is loaded
+// Synchronous logger: the calling thread formats (via LogFormatter, no per-call garbage) and writes the line.
 public class LoggerEagerInitializationSingleton {
     private static LoggerEagerInitializationSingleton instance = new LoggerEagerInitializationSingleton();
 
+    private volatile LogLevel level = LogLevel.INFO;
+    private volatile LogSink sink = ChannelLogSink.stdout();
+
     private LoggerEagerInitializationSingleton(){
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
     }
 
     public static LoggerEagerInitializationSingleton getInstance(){
         return instance;
     }
 
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public boolean isEnabled(LogLevel recordLevel) {
+        return recordLevel.isEnabled(level);
+    }
+
+    public synchronized void setSink(LogSink newSink) {
+        LogSink old = sink;
+        sink = newSink;
+        try {
+            old.flush();
+            old.close();
+        } catch (IOException e) {
+            System.err.println("Logger close failed: " + e);
+        }
+    }
+
+    public void trace(String template) { log(LogLevel.TRACE, template); }
+    public void trace(String template, Object arg) { log(LogLevel.TRACE, template, arg); }
+    public void trace(String template, Object arg0, Object arg1) { log(LogLevel.TRACE, template, arg0, arg1); }
+    public void trace(String template, Object... args) { log(LogLevel.TRACE, template, args); }
+
+    public void debug(String template) { log(LogLevel.DEBUG, template); }
+    public void debug(String template, Object arg) { log(LogLevel.DEBUG, template, arg); }
+    public void debug(String template, Object arg0, Object arg1) { log(LogLevel.DEBUG, template, arg0, arg1); }
+    public void debug(String template, Object... args) { log(LogLevel.DEBUG, template, args); }
+
+    public void info(String template) { log(LogLevel.INFO, template); }
+    public void info(String template, Object arg) { log(LogLevel.INFO, template, arg); }
+    public void info(String template, Object arg0, Object arg1) { log(LogLevel.INFO, template, arg0, arg1); }
+    public void info(String template, Object... args) { log(LogLevel.INFO, template, args); }
+
+    public void warn(String template) { log(LogLevel.WARN, template); }
+    public void warn(String template, Object arg) { log(LogLevel.WARN, template, arg); }
+    public void warn(String template, Object arg0, Object arg1) { log(LogLevel.WARN, template, arg0, arg1); }
+    public void warn(String template, Object... args) { log(LogLevel.WARN, template, args); }
+
+    public void error(String template) { log(LogLevel.ERROR, template); }
+    public void error(String template, Object arg) { log(LogLevel.ERROR, template, arg); }
+    public void error(String template, Object arg0, Object arg1) { log(LogLevel.ERROR, template, arg0, arg1); }
+    public void error(String template, Object... args) { log(LogLevel.ERROR, template, args); }
+
+    // Disabled levels return before touching the formatter.
+    public void log(LogLevel recordLevel, String template) {
+        if (isEnabled(recordLevel)) {
+            write(LogFormatter.current().format(recordLevel, System.currentTimeMillis(),
+                    Thread.currentThread().getName(), template, 0, null, null));
+        }
+    }
+
+    public void log(LogLevel recordLevel, String template, Object arg) {
+        if (isEnabled(recordLevel)) {
+            write(LogFormatter.current().format(recordLevel, System.currentTimeMillis(),
+                    Thread.currentThread().getName(), template, 1, arg, null));
+        }
+    }
+
+    public void log(LogLevel recordLevel, String template, Object arg0, Object arg1) {
+        if (isEnabled(recordLevel)) {
+            write(LogFormatter.current().format(recordLevel, System.currentTimeMillis(),
+                    Thread.currentThread().getName(), template, 2, arg0, arg1));
+        }
+    }
+
+    public void log(LogLevel recordLevel, String template, Object... args) {
+        if (isEnabled(recordLevel)) {
+            write(LogFormatter.current().format(recordLevel, System.currentTimeMillis(),
+                    Thread.currentThread().getName(), template, args));
+        }
+    }
+
+    // LogSink isn't thread-safe, so lines from different threads are written one at a time.
+    // Each line is its own batch: flushed right away, as the async logger flushes after each batch
+    // (with MappedFileLogSink in PER_BATCH mode that forces every line to disk).
+    private synchronized void write(ByteBuffer line) {
+        try {
+            sink.write(line);
+            sink.flush();
+        } catch (IOException e) {
+            System.err.println("Logger write failed: " + e);
+        }
+    }
+
     public static void main(String[] args) {
         LoggerEagerInitializationSingleton obj1 = LoggerEagerInitializationSingleton.getInstance();
         System.out.println(obj1);
 
         LoggerEagerInitializationSingleton obj2 = LoggerEagerInitializationSingleton.getInstance();
         System.out.println(obj2);
+
+        obj1.info("Same instance? {}", obj1 == obj2);
+        obj1.debug("Skipped without formatting: {}", obj2);
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ public class LoggerLazyInitializationSingleton {
     private static LoggerLazyInitializationSingleton instance;
 
     private LoggerLazyInitializationSingleton(){
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
     }
 
     public static LoggerLazyInitializationSingleton getInstance(){
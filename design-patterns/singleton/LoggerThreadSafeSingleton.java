@@ -1,10 +1,54 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Asynchronous logger behind a double-checked singleton.
+
+Caller threads only claim a slot in a lock-free ring buffer and return - they never touch
+the console or a file. One background consumer thread drains the buffer in batches,
+formats the records and hands one large buffer per batch to the LogSink (stdout by default).
+
+    LoggerThreadSafeSingleton log = LoggerThreadSafeSingleton.getInstance();
+    log.info("Order {} placed by {}", orderId, user);
+
+shutdown() is final: every record logged before it returns is written, then the sink is
+closed, and records logged afterwards are dropped (counted by getDroppedCount()) rather than
+restarting the consumer on a closed sink.
+
+setSink() swaps the sink at once, but a replaced sink is only flushed and closed by the consumer
+after the batch it may be writing - so no sink is ever closed under a write.
+*/
 public class LoggerThreadSafeSingleton {
 
-    // We have made this particular instance as volatile. 
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final int BATCH_SIZE = 1024;
+    private static final int BATCH_BUFFER_BYTES = 256 * 1024;
+
+    // We have made this particular instance as volatile.
     // volatile is a keyword in java which makes the changes or threads which are accessing this particular variable visible.
     private static volatile LoggerThreadSafeSingleton instance;
 
+    private final LogRingBuffer ring = new LogRingBuffer(RING_CAPACITY);
+    private volatile LogLevel level = LogLevel.INFO;
+    private volatile LogSink sink = ChannelLogSink.stdout();
+    private final ConcurrentLinkedQueue<LogSink> retired = new ConcurrentLinkedQueue<>(); // replaced, not yet closed
+    private volatile boolean running;
+    private volatile boolean closed;
+    private final AtomicInteger producers = new AtomicInteger(); // threads inside publish()
+    private final AtomicLong dropped = new AtomicLong();
+    private boolean shutdownHookInstalled;
+    private Thread consumer;
+
+    // consumer-thread state, reused for every batch
+    private final ByteBuffer batch = ByteBuffer.allocate(BATCH_BUFFER_BYTES);
+
     private LoggerThreadSafeSingleton(){
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
         if(instance != null){
             throw new RuntimeException("Instance already created");
         }
@@ -23,10 +67,240 @@ public class LoggerThreadSafeSingleton {
         return instance;
     }
 
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public boolean isEnabled(LogLevel recordLevel) {
+        return recordLevel.isEnabled(level);
+    }
+
+    // Replaces the sink. Once the consumer has started, the old sink is flushed and closed by the
+    // consumer thread after it has finished the batch it may be writing to it.
+    public synchronized void setSink(LogSink newSink) {
+        if (closed) {
+            throw new IllegalStateException("logger is shut down");
+        }
+        LogSink old = sink;
+        sink = newSink;
+        if (consumer == null) {
+            closeQuietly(old); // nothing has written to it yet, nothing else can
+        } else {
+            retired.add(old);
+        }
+    }
+
+    // Fixed-arity overloads exist so the common calls don't allocate a varargs array.
+    public void trace(String template) { log(LogLevel.TRACE, template); }
+    public void trace(String template, Object arg) { log(LogLevel.TRACE, template, arg); }
+    public void trace(String template, Object arg0, Object arg1) { log(LogLevel.TRACE, template, arg0, arg1); }
+    public void trace(String template, Object... args) { log(LogLevel.TRACE, template, args); }
+
+    public void debug(String template) { log(LogLevel.DEBUG, template); }
+    public void debug(String template, Object arg) { log(LogLevel.DEBUG, template, arg); }
+    public void debug(String template, Object arg0, Object arg1) { log(LogLevel.DEBUG, template, arg0, arg1); }
+    public void debug(String template, Object... args) { log(LogLevel.DEBUG, template, args); }
+
+    public void info(String template) { log(LogLevel.INFO, template); }
+    public void info(String template, Object arg) { log(LogLevel.INFO, template, arg); }
+    public void info(String template, Object arg0, Object arg1) { log(LogLevel.INFO, template, arg0, arg1); }
+    public void info(String template, Object... args) { log(LogLevel.INFO, template, args); }
+
+    public void warn(String template) { log(LogLevel.WARN, template); }
+    public void warn(String template, Object arg) { log(LogLevel.WARN, template, arg); }
+    public void warn(String template, Object arg0, Object arg1) { log(LogLevel.WARN, template, arg0, arg1); }
+    public void warn(String template, Object... args) { log(LogLevel.WARN, template, args); }
+
+    public void error(String template) { log(LogLevel.ERROR, template); }
+    public void error(String template, Object arg) { log(LogLevel.ERROR, template, arg); }
+    public void error(String template, Object arg0, Object arg1) { log(LogLevel.ERROR, template, arg0, arg1); }
+    public void error(String template, Object... args) { log(LogLevel.ERROR, template, args); }
+
+    // `{}` in the template is replaced by the next argument. Formatting happens on the consumer thread,
+    // so arguments should be immutable (or at least not changed after the call).
+    public void log(LogLevel recordLevel, String template) {
+        if (isEnabled(recordLevel)) {
+            publish(recordLevel, template, 0, null, null, null);
+        }
+    }
+
+    public void log(LogLevel recordLevel, String template, Object arg) {
+        if (isEnabled(recordLevel)) {
+            publish(recordLevel, template, 1, arg, null, null);
+        }
+    }
+
+    public void log(LogLevel recordLevel, String template, Object arg0, Object arg1) {
+        if (isEnabled(recordLevel)) {
+            publish(recordLevel, template, 2, arg0, arg1, null);
+        }
+    }
+
+    public void log(LogLevel recordLevel, String template, Object... args) {
+        if (isEnabled(recordLevel)) {
+            publish(recordLevel, template, -1, null, null, args);
+        }
+    }
+
+    // Records logged after shutdown() that were dropped.
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void publish(LogLevel recordLevel, String template, int argCount, Object arg0, Object arg1, Object[] args) {
+        // Counted in before `closed` is read: the consumer only exits once no producer is in
+        // here, so a record whose producer saw closed == false is always drained.
+        producers.incrementAndGet();
+        try {
+            if (closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (!running) {
+                start();
+            }
+            int spins = 0;
+            while (!(argCount < 0
+                    ? ring.offer(recordLevel, template, args)
+                    : ring.offer(recordLevel, template, argCount, arg0, arg1))) {
+                // Buffer full: back off until the consumer catches up. Still no I/O on this thread.
+                if (++spins < 64) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private synchronized void start() {
+        if (running || closed) {
+            return;
+        }
+        running = true;
+        consumer = new Thread(this::consumeLoop, "logger-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+        if (!shutdownHookInstalled) {
+            shutdownHookInstalled = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "logger-shutdown"));
+        }
+    }
+
+    // Stops the consumer after everything already published has been written, and closes the sink.
+    public void shutdown() {
+        Thread t;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!running) {
+                closeQuietly(sink);
+                return;
+            }
+            running = false;
+            t = consumer;
+        }
+        LockSupport.unpark(t);
+        try {
+            t.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consumeLoop() {
+        int idle = 0;
+        while (true) {
+            int drained = ring.drain(this::append, BATCH_SIZE);
+            if (drained > 0) {
+                idle = 0;
+                writeBatch();
+                continue;
+            }
+            // Producers first: once none is publishing, every claimed slot has been published.
+            if (closed && producers.get() == 0 && ring.isEmpty()) {
+                break;
+            }
+            if (++idle < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+            }
+        }
+        writeBatch();
+        closeQuietly(sink); // final: setSink() refuses once closed is set
+    }
+
+    private void append(LogRingBuffer.Record record) {
+        LogFormatter formatter = LogFormatter.current();
+        ByteBuffer line = record.argCount < 0
+                ? formatter.format(record.level, record.timestampMillis, record.threadName, record.template, record.args)
+                : formatter.format(record.level, record.timestampMillis, record.threadName, record.template,
+                        record.argCount, record.arg0, record.arg1);
+        if (line.remaining() > batch.remaining()) {
+            writeBatch();
+        }
+        if (line.remaining() > batch.capacity()) {
+            writeToSink(line);
+        } else {
+            batch.put(line);
+        }
+    }
+
+    private void writeBatch() {
+        LogSink current = sink;
+        if (batch.position() > 0) {
+            batch.flip();
+            writeToSink(batch);
+            batch.clear();
+        }
+        try {
+            current.flush();
+        } catch (IOException e) {
+            System.err.println("Logger flush failed: " + e);
+        }
+        // Everything retired before this point was swapped out before the writes above finished.
+        for (LogSink old; (old = retired.poll()) != null; ) {
+            if (old != sink) { // set again since it was replaced
+                closeQuietly(old);
+            }
+        }
+    }
+
+    private void writeToSink(ByteBuffer bytes) {
+        try {
+            sink.write(bytes);
+        } catch (IOException e) {
+            System.err.println("Logger write failed: " + e);
+        }
+    }
+
+    private static void closeQuietly(LogSink s) {
+        try {
+            s.flush();
+            s.close();
+        } catch (IOException e) {
+            System.err.println("Logger close failed: " + e);
+        }
+    }
+
     public static void main(String[] args){
         LoggerThreadSafeSingleton obj1 = LoggerThreadSafeSingleton.getInstance();
         System.out.println(obj1);
         LoggerThreadSafeSingleton obj2 = LoggerThreadSafeSingleton.getInstance();
         System.out.println(obj2);
+
+        obj1.info("Same instance? {}", obj1 == obj2);
+        obj1.debug("Not printed, level is {}", obj1.getLevel());
+        obj1.warn("{} records can wait in the ring buffer", RING_CAPACITY);
+        obj1.shutdown();
     }
-}
\ No newline at end of file
+}
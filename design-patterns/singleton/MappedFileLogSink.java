@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+LogSink that writes into memory-mapped, fixed-size segment files instead of one write() per line.
+
+    <dir>/<name>-000001.log, <name>-000002.log, ...
+
+A segment is mapped once; writing a record is a memory copy. When the next record doesn't fit,
+the segment is forced (unless fsync is NEVER), unmapped, and the sink rolls over to a new one.
+Unmapping uses sun.misc.Unsafe.invokeCleaner (Java 17 has no public unmap); otherwise every
+old segment would stay in the address space until the GC got around to its buffer.
+
+With FsyncPolicy.INTERVAL a timer thread forces the segment every interval if anything was
+written since the last force - so the last records reach the disk even if the logger then
+goes quiet and flush() is never called again.
+
+Every write() becomes one framed record:
+
+    [int length][int crc32 of payload][payload bytes]
+
+Segments are created zero-filled, so a zero length marks the end of the data. On startup every
+segment is scanned and whatever follows its last record with a valid length and checksum (a
+record torn by a crash) is zeroed; the sink resumes right after the last record of the newest
+segment, overwriting its torn tail.
+
+write(), flush(), roll and close all run under the sink's lock, so a write can never touch a
+segment that close() or a roll has just unmapped - that would crash the JVM, not throw. A
+write after close() throws an IOException.
+
+    LoggerThreadSafeSingleton.getInstance().setSink(
+            MappedFileLogSink.open(Paths.get("logs"), "app", 64 << 20, FsyncPolicy.PER_BATCH, 0));
+*/
+public class MappedFileLogSink implements LogSink {
+
+    public enum FsyncPolicy {
+        NEVER,     // leave it to the OS page cache
+        PER_BATCH, // force the segment on every flush(), i.e. once per drained batch
+        INTERVAL   // force every configured interval, from a timer, if anything was written
+    }
+
+    static final int HEADER_BYTES = 8;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not available: mappings are released when their buffers are collected
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final Path dir;
+    private final String name;
+    private final int segmentSize;
+    private final FsyncPolicy fsync;
+    private final long intervalMillis;
+    private final CRC32 crc = new CRC32();
+
+    // The consumer thread writes; the INTERVAL timer only forces. Everything that touches the
+    // segment holds the sink's lock; segment == null once closed.
+    private int segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private volatile boolean dirty;
+    private ScheduledExecutorService timer;
+
+    private MappedFileLogSink(Path dir, String name, int segmentSize, FsyncPolicy fsync, long intervalMillis) {
+        if (segmentSize <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (fsync == FsyncPolicy.INTERVAL && intervalMillis <= 0) {
+            throw new IllegalArgumentException("INTERVAL needs a positive interval: " + intervalMillis);
+        }
+        this.dir = dir;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.intervalMillis = intervalMillis;
+    }
+
+    // Opens the newest existing segment (recovering its end position) or creates the first one.
+    public static MappedFileLogSink open(Path dir, String name, int segmentSize,
+                                         FsyncPolicy fsync, long intervalMillis) throws IOException {
+        Files.createDirectories(dir);
+        MappedFileLogSink sink = new MappedFileLogSink(dir, name, segmentSize, fsync, intervalMillis);
+        List<Path> segments = segments(dir, name);
+        if (segments.isEmpty()) {
+            sink.openSegment(1);
+        } else {
+            for (Path older : segments.subList(0, segments.size() - 1)) {
+                truncateTornTail(older);
+            }
+            Path newest = segments.get(segments.size() - 1);
+            sink.openSegment(indexOf(newest, name));
+            sink.recover();
+        }
+        if (fsync == FsyncPolicy.INTERVAL) {
+            sink.startTimer();
+        }
+        return sink;
+    }
+
+    @Override
+    public synchronized void write(ByteBuffer bytes) throws IOException {
+        if (segment == null) {
+            throw new IOException("Log sink " + name + " is closed");
+        }
+        int maxPayload = segmentSize - HEADER_BYTES;
+        while (bytes.hasRemaining()) {
+            if (segment.remaining() <= HEADER_BYTES) {
+                roll();
+            }
+            int chunk = Math.min(bytes.remaining(), segment.remaining() - HEADER_BYTES);
+            if (chunk < bytes.remaining() && chunk < maxPayload && segment.position() > 0) {
+                // Doesn't fit in what is left of this segment; start a fresh one rather than split early.
+                roll();
+                continue;
+            }
+            appendRecord(bytes, chunk);
+        }
+    }
+
+    private void appendRecord(ByteBuffer bytes, int length) {
+        int headerAt = segment.position();
+        ByteBuffer payload = bytes.duplicate();
+        payload.limit(payload.position() + length);
+
+        crc.reset();
+        crc.update(payload.duplicate());
+
+        // payload and checksum first, length last: a crash in between leaves length 0 = end of data
+        segment.position(headerAt + HEADER_BYTES);
+        segment.put(payload);
+        segment.putInt(headerAt + 4, (int) crc.getValue());
+        segment.putInt(headerAt, length);
+
+        bytes.position(bytes.position() + length);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (dirty && fsync == FsyncPolicy.PER_BATCH && segment != null) {
+            force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            if (fsync != FsyncPolicy.NEVER && dirty) {
+                force();
+            }
+            unmap(segment);
+            segment = null;
+            channel.close();
+            channel = null;
+            stopped = timer;
+            timer = null;
+        }
+        if (stopped != null) {
+            stopped.shutdownNow();
+        }
+    }
+
+    int currentSegmentIndex() {
+        return segmentIndex;
+    }
+
+    // Cleared before forcing: a record written during the force sets it again and is forced next time.
+    private synchronized void force() {
+        dirty = false;
+        segment.force();
+    }
+
+    private synchronized void forceIfDirty() {
+        if (dirty && segment != null) {
+            force();
+        }
+    }
+
+    private void startTimer() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "log-fsync-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::forceIfDirty, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void roll() throws IOException {
+        if (fsync != FsyncPolicy.NEVER && dirty) {
+            force();
+        }
+        unmap(segment);
+        segment = null;
+        channel.close();
+        openSegment(segmentIndex + 1);
+    }
+
+    // Releases the mapping now. The buffer must not be used afterwards (that would crash the JVM).
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // left to the GC
+        }
+    }
+
+    private void openSegment(int index) throws IOException {
+        segmentIndex = index;
+        channel = FileChannel.open(segmentPath(dir, name, index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        dirty = false;
+    }
+
+    // Positions the segment after the last valid record and zeroes whatever a crash left behind it.
+    private void recover() {
+        int end = validEnd(segment, segmentSize);
+        if (zeroFrom(segment, end, segmentSize)) {
+            dirty = true;
+        }
+        segment.position(end);
+    }
+
+    // An older segment was forced when the sink rolled past it, unless fsync is NEVER - then a
+    // crash can tear its last records too. Zeroing the rest keeps replay from ever reading it.
+    private static void truncateTornTail(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int size = (int) ch.size();
+            MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            try {
+                if (zeroFrom(data, validEnd(data, size), size)) {
+                    data.force();
+                }
+            } finally {
+                unmap(data);
+            }
+        }
+    }
+
+    private static boolean zeroFrom(ByteBuffer data, int from, int size) {
+        boolean changed = false;
+        for (int i = from; i < size; i++) {
+            if (data.get(i) != 0) {
+                data.put(i, (byte) 0);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // Offset just past the last complete record in the buffer.
+    static int validEnd(ByteBuffer segment, int size) {
+        CRC32 check = new CRC32();
+        int pos = 0;
+        while (pos + HEADER_BYTES <= size) {
+            int length = segment.getInt(pos);
+            if (length <= 0 || length > size - pos - HEADER_BYTES) {
+                break;
+            }
+            ByteBuffer payload = segment.duplicate();
+            payload.limit(pos + HEADER_BYTES + length).position(pos + HEADER_BYTES);
+            check.reset();
+            check.update(payload);
+            if ((int) check.getValue() != segment.getInt(pos + 4)) {
+                break;
+            }
+            pos += HEADER_BYTES + length;
+        }
+        return pos;
+    }
+
+    // Copies the payload of every complete record, oldest segment first, to `out` - i.e. the plain log text.
+    public static void replay(Path dir, String name, WritableByteChannel out) throws IOException {
+        for (Path path : segments(dir, name)) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                int size = (int) ch.size();
+                MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                try {
+                    int end = validEnd(data, size);
+                    int pos = 0;
+                    while (pos < end) {
+                        int length = data.getInt(pos);
+                        ByteBuffer payload = data.duplicate();
+                        payload.limit(pos + HEADER_BYTES + length).position(pos + HEADER_BYTES);
+                        while (payload.hasRemaining()) {
+                            out.write(payload);
+                        }
+                        pos += HEADER_BYTES + length;
+                    }
+                } finally {
+                    unmap(data);
+                }
+            }
+        }
+    }
+
+    static Path segmentPath(Path dir, String name, int index) {
+        return dir.resolve(String.format("%s-%06d.log", name, index));
+    }
+
+    private static List<Path> segments(Path dir, String name) throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return result;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, name + "-[0-9][0-9][0-9][0-9][0-9][0-9].log")) {
+            for (Path p : stream) {
+                result.add(p);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static int indexOf(Path segment, String name) {
+        String file = segment.getFileName().toString();
+        return Integer.parseInt(file.substring(name.length() + 1, file.length() - ".log".length()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("mapped-log");
+        LoggerThreadSafeSingleton logger = LoggerThreadSafeSingleton.getInstance();
+        logger.setSink(MappedFileLogSink.open(dir, "app", 4096, FsyncPolicy.PER_BATCH, 0));
+        for (int i = 0; i < 200; i++) {
+            logger.info("Order {} settled", i);
+        }
+        logger.shutdown();
+
+        System.out.println("Segments in " + dir + ": " + segments(dir, "app").size());
+        replay(dir, "app", java.nio.channels.Channels.newChannel(System.out));
+
+        for (Path segment : segments(dir, "app")) {
+            Files.delete(segment);
+        }
+        Files.delete(dir);
+    }
+}
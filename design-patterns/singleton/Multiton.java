@@ -0,0 +1,90 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/*
+Multiton - "one instance per key" instead of one per JVM (e.g. one client per tenant or region).
+
+    Multiton<String, RegionClient> clients = new Multiton<>(RegionClient::new);
+    RegionClient eu = clients.get("eu-west-1");
+
+    - get() for a key that already exists is a single lock-free ConcurrentHashMap read.
+    - A missing key is built lazily under one of a fixed set of stripe locks, chosen by the
+      key's hash. There is no global lock: builds for keys on different stripes run in parallel.
+    - The factory runs exactly once per key (second check inside the stripe lock, like DCL).
+      If it throws, nothing is stored and the next get() tries again.
+
+Unlike ConcurrentHashMap.computeIfAbsent, a slow factory only blocks keys on its own stripe and
+never holds a lock of the map itself.
+*/
+public class Multiton<K, V> {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final ConcurrentHashMap<K, V> instances = new ConcurrentHashMap<>();
+    private final Object[] stripes;
+    private final Function<? super K, ? extends V> factory;
+
+    public Multiton(Function<? super K, ? extends V> factory) {
+        this(factory, DEFAULT_STRIPES);
+    }
+
+    public Multiton(Function<? super K, ? extends V> factory, int stripeCount) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two: " + stripeCount);
+        }
+        this.factory = factory;
+        this.stripes = new Object[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    public V get(K key) {
+        V instance = instances.get(key); // fast path: lock-free read
+        if (instance != null) {
+            return instance;
+        }
+        synchronized (stripeFor(key)) {
+            instance = instances.get(key); // second check
+            if (instance == null) {
+                instance = factory.apply(key);
+                if (instance == null) {
+                    throw new NullPointerException("Factory returned null for key " + key);
+                }
+                instances.put(key, instance);
+            }
+            return instance;
+        }
+    }
+
+    // Returns the instance only if it was already built; never runs the factory.
+    public V getIfPresent(K key) {
+        return instances.get(key);
+    }
+
+    public int size() {
+        return instances.size();
+    }
+
+    public Map<K, V> snapshot() {
+        return Map.copyOf(instances);
+    }
+
+    private Object stripeFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16); // spread high bits, the stripe count is small
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    public static void main(String[] args) {
+        Multiton<String, StringBuilder> perTenant = new Multiton<>(tenant -> {
+            System.out.println("Creating instance for " + tenant);
+            return new StringBuilder(tenant);
+        });
+
+        System.out.println(perTenant.get("acme") == perTenant.get("acme")); // true, factory ran once
+        System.out.println(perTenant.get("acme") == perTenant.get("globex")); // false
+        System.out.println(perTenant.size());
+    }
+}
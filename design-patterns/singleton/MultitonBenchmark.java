@@ -0,0 +1,101 @@
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/*
+Multiton vs the two obvious alternatives, over 100k keys:
+
+    synchronized HashMap            - one global lock for every lookup
+    ConcurrentHashMap.computeIfAbsent
+    Multiton                        - lock-free hit, striped lock on miss
+
+Each run starts empty and every thread looks up random keys, so the first phase is miss-heavy
+(each key built once) and the rest is all hits. We also count factory calls; it must equal the
+key count for every strategy.
+
+    java MultitonBenchmark [threads] [lookupsPerThread]
+*/
+class MultitonBenchmark {
+
+    private static final int KEYS = 100_000;
+
+    interface Lookup {
+        Object get(Integer key);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        Integer[] keys = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = i; // boxed up front so boxing isn't measured
+        }
+
+        for (int round = 0; round < 3; round++) { // round 0 is warm-up
+            boolean report = round > 0;
+            bench("synchronized HashMap", report, threads, lookups, keys, factory -> {
+                Map<Integer, Object> map = new HashMap<>();
+                return key -> {
+                    synchronized (map) {
+                        return map.computeIfAbsent(key, factory);
+                    }
+                };
+            });
+            bench("ConcurrentHashMap.computeIfAbsent", report, threads, lookups, keys, factory -> {
+                ConcurrentHashMap<Integer, Object> map = new ConcurrentHashMap<>();
+                return key -> map.computeIfAbsent(key, factory);
+            });
+            bench("Multiton", report, threads, lookups, keys, factory -> {
+                Multiton<Integer, Object> multiton = new Multiton<>(factory);
+                return multiton::get;
+            });
+        }
+    }
+
+    static void bench(String name, boolean report, int threads, int lookups, Integer[] keys,
+                      Function<Function<Integer, Object>, Lookup> strategy) throws InterruptedException {
+        AtomicInteger factoryCalls = new AtomicInteger();
+        Lookup lookup = strategy.apply(key -> {
+            factoryCalls.incrementAndGet();
+            return new Object();
+        });
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < lookups; i++) {
+                        if (lookup.get(keys[random.nextInt(keys.length)]) == null) {
+                            throw new IllegalStateException("null instance");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        if (report) {
+            System.out.printf(Locale.ROOT, "%-34s %,14.0f lookups/sec  factory calls=%d%n",
+                    name, (double) threads * lookups * 1e9 / elapsed, factoryCalls.get());
+        }
+        if (factoryCalls.get() > keys.length) {
+            throw new IllegalStateException(name + " ran the factory more than once for a key");
+        }
+    }
+}
@@ -0,0 +1,349 @@
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/*
+Bounded pool of expensive objects (connections, parsers, buffers...). Usually held by a singleton,
+see ConnectionPool.
+
+    try (ObjectPool.Lease<FakeConnection> lease = pool.borrow(100, TimeUnit.MILLISECONDS)) {
+        lease.get().query("select 1");
+    }
+
+Fast path, no locks:
+    1. the thread-local hint - the object this thread returned last - claimed with one CAS
+    2. otherwise pop the shared lock-free stack of idle objects (most recently used first)
+    3. otherwise create a new object if fewer than maxSize exist
+A Semaphore with maxSize permits bounds the objects handed out; when none are left, borrow()
+blocks (or times out). An acquired permit is a single CAS too.
+
+Every borrowed object passes the validator first; invalid ones are destroyed and replaced.
+Objects idle for longer than idleTimeout are destroyed by a background evictor.
+
+Each borrow gets a new Lease stamped with the object's borrow generation. Closing a lease
+twice, or calling get() on it after closing, fails with IllegalStateException - even when the
+object has been lent out again since - instead of taking the object away from its new borrower.
+After close() the pool lends nothing: borrow() throws IllegalStateException.
+*/
+public class ObjectPool<T> implements AutoCloseable {
+
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = 2;
+    private static final int STATE_BITS = 2;
+
+    // One borrow of a pooled object. Closing the lease returns the object to the pool.
+    public static final class Lease<T> implements AutoCloseable {
+        private final ObjectPool<T> pool;
+        private final Slot<T> slot;
+        private final long generation;
+
+        private Lease(ObjectPool<T> pool, Slot<T> slot, long generation) {
+            this.pool = pool;
+            this.slot = slot;
+            this.generation = generation;
+        }
+
+        public T get() {
+            if (slot.stamp.get() != stamp(generation, IN_USE)) {
+                throw new IllegalStateException("Lease already closed");
+            }
+            return slot.object;
+        }
+
+        @Override
+        public void close() {
+            pool.release(this);
+        }
+    }
+
+    // A pooled object plus its bookkeeping. `stamp` packs the borrow generation with the state,
+    // so one CAS both checks that a lease is current and changes the state.
+    private static final class Slot<T> {
+        private final T object;
+        private final AtomicLong stamp = new AtomicLong(stamp(0, IN_USE));
+        private final AtomicBoolean queued = new AtomicBoolean(); // currently in the idle stack
+        private volatile long lastReturnedNanos;
+
+        private Slot(T object) {
+            this.object = object;
+        }
+
+        // IDLE -> IN_USE under a new generation; returns that generation, or -1 if not idle.
+        private long tryClaim() {
+            long current = stamp.get();
+            if ((current & (1 << STATE_BITS) - 1) != IDLE) {
+                return -1;
+            }
+            long generation = (current >>> STATE_BITS) + 1;
+            return stamp.compareAndSet(current, stamp(generation, IN_USE)) ? generation : -1;
+        }
+
+        private boolean tryRemoveIdle() {
+            long current = stamp.get();
+            return (current & (1 << STATE_BITS) - 1) == IDLE
+                    && stamp.compareAndSet(current, stamp(current >>> STATE_BITS, REMOVED));
+        }
+    }
+
+    private static long stamp(long generation, int state) {
+        return generation << STATE_BITS | state;
+    }
+
+    private final Supplier<? extends T> factory;
+    private final Predicate<? super T> validator;
+    private final Consumer<? super T> destroyer;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+
+    private final Semaphore permits;
+    private final AtomicInteger size = new AtomicInteger();
+    private final ConcurrentLinkedDeque<Slot<T>> idle = new ConcurrentLinkedDeque<>();
+    private final ThreadLocal<Slot<T>> lastReturned = new ThreadLocal<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private ObjectPool(Builder<T> builder) {
+        this.factory = builder.factory;
+        this.validator = builder.validator;
+        this.destroyer = builder.destroyer;
+        this.maxSize = builder.maxSize;
+        this.idleTimeoutNanos = builder.idleTimeout.toNanos(builder.idleTimeoutValue);
+        this.permits = new Semaphore(maxSize);
+        if (idleTimeoutNanos > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "object-pool-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1, idleTimeoutNanos / 2);
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+        } else {
+            evictor = null;
+        }
+    }
+
+    // Blocks until an object is available.
+    public Lease<T> borrow() throws InterruptedException {
+        checkOpen();
+        permits.acquire();
+        return claimWithPermit();
+    }
+
+    // Waits at most `timeout` for an object.
+    public Lease<T> borrow(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        checkOpen();
+        if (!permits.tryAcquire(timeout, unit)) {
+            throw new TimeoutException("No pooled object available within " + timeout + " " + unit);
+        }
+        return claimWithPermit();
+    }
+
+    private Lease<T> claimWithPermit() {
+        try {
+            while (true) {
+                checkOpen(); // close() may have run while we waited for the permit
+                Lease<T> lease = takeIdle();
+                if (lease == null) {
+                    lease = tryCreate();
+                    if (lease == null) {
+                        // At maxSize and an object is between release and the idle stack; it shows up shortly.
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                }
+                boolean valid;
+                try {
+                    valid = validator.test(lease.slot.object);
+                } catch (RuntimeException | Error e) {
+                    remove(lease.slot); // treat it as invalid, or the pool loses this slot for good
+                    throw e;
+                }
+                if (valid) {
+                    return lease;
+                }
+                remove(lease.slot);
+            }
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Lease<T> takeIdle() {
+        Slot<T> hint = lastReturned.get();
+        long generation;
+        if (hint != null && (generation = hint.tryClaim()) >= 0) {
+            return new Lease<>(this, hint, generation);
+        }
+        Slot<T> slot;
+        while ((slot = idle.pollFirst()) != null) {
+            slot.queued.set(false); // before the claim, so a concurrent release re-queues it
+            if ((generation = slot.tryClaim()) >= 0) {
+                return new Lease<>(this, slot, generation);
+            }
+            // claimed via another thread's hint, or evicted; skip it
+        }
+        return null;
+    }
+
+    private Lease<T> tryCreate() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= maxSize) {
+                return null;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        try {
+            Slot<T> slot = new Slot<>(Objects.requireNonNull(factory.get(), "factory returned null"));
+            return new Lease<>(this, slot, 0);
+        } catch (RuntimeException | Error e) {
+            size.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void release(Lease<T> lease) {
+        Slot<T> slot = lease.slot;
+        long inUse = stamp(lease.generation, IN_USE);
+        if (closed) {
+            if (!slot.stamp.compareAndSet(inUse, stamp(lease.generation, REMOVED))) {
+                throw new IllegalStateException("Lease already closed");
+            }
+            size.decrementAndGet();
+            destroyQuietly(slot.object);
+            permits.release();
+            return;
+        }
+        slot.lastReturnedNanos = System.nanoTime();
+        if (!slot.stamp.compareAndSet(inUse, stamp(lease.generation, IDLE))) {
+            throw new IllegalStateException("Lease already closed");
+        }
+        lastReturned.set(slot);
+        if (slot.queued.compareAndSet(false, true)) {
+            idle.offerFirst(slot);
+        }
+        // close() may have drained the idle stack between the check above and the offer.
+        if (closed && slot.tryRemoveIdle()) {
+            idle.remove(slot);
+            size.decrementAndGet();
+            destroyQuietly(slot.object);
+        }
+        permits.release();
+    }
+
+    // Destroys an object that failed validation (the caller holds it IN_USE).
+    private void remove(Slot<T> slot) {
+        slot.stamp.set(stamp(slot.stamp.get() >>> STATE_BITS, REMOVED));
+        size.decrementAndGet();
+        destroyQuietly(slot.object);
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Slot<T> slot : idle) {
+            if (now - slot.lastReturnedNanos > idleTimeoutNanos && slot.tryRemoveIdle()) {
+                idle.remove(slot);
+                size.decrementAndGet();
+                destroyQuietly(slot.object);
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Pool is closed");
+        }
+    }
+
+    private void destroyQuietly(T object) {
+        try {
+            destroyer.accept(object);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to destroy pooled object: " + e);
+        }
+    }
+
+    // Number of objects currently alive (idle + borrowed).
+    public int size() {
+        return size.get();
+    }
+
+    public int available() {
+        return permits.availablePermits();
+    }
+
+    // Stops eviction and destroys the idle objects. Borrowed objects are destroyed when they are returned.
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        Slot<T> slot;
+        while ((slot = idle.pollFirst()) != null) {
+            if (slot.tryRemoveIdle()) {
+                size.decrementAndGet();
+                destroyQuietly(slot.object);
+            }
+        }
+    }
+
+    public static <T> Builder<T> builder(Supplier<? extends T> factory) {
+        return new Builder<>(factory);
+    }
+
+    // Builder
+    public static class Builder<T> {
+        private final Supplier<? extends T> factory;
+        private Predicate<? super T> validator = o -> true;
+        private Consumer<? super T> destroyer = o -> { };
+        private int maxSize = 8;
+        private long idleTimeoutValue = 0;
+        private TimeUnit idleTimeout = TimeUnit.MILLISECONDS;
+
+        private Builder(Supplier<? extends T> factory) {
+            this.factory = Objects.requireNonNull(factory);
+        }
+
+        public Builder<T> setMaxSize(int maxSize) {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        // 0 disables idle eviction.
+        public Builder<T> setIdleTimeout(long value, TimeUnit unit) {
+            this.idleTimeoutValue = value;
+            this.idleTimeout = unit;
+            return this;
+        }
+
+        public Builder<T> setValidator(Predicate<? super T> validator) {
+            this.validator = validator;
+            return this;
+        }
+
+        public Builder<T> setDestroyer(Consumer<? super T> destroyer) {
+            this.destroyer = destroyer;
+            return this;
+        }
+
+        public ObjectPool<T> build() {
+            return new ObjectPool<>(this);
+        }
+    }
+}
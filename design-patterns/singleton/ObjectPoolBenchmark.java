@@ -0,0 +1,80 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+Borrow latency of ObjectPool as the number of threads grows from 1 to 256.
+
+The pool is as large as the biggest thread count and pre-filled, so we measure the cost of the
+pool's own bookkeeping (hint, stack, permits) under contention rather than waiting for capacity.
+Each thread borrows, touches the connection, returns it; every borrow is timed.
+
+    java ObjectPoolBenchmark [borrowsPerThread]
+*/
+class ObjectPoolBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 4, 16, 64, 256};
+
+    public static void main(String[] args) throws Exception {
+        int borrows = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int maxThreads = THREAD_COUNTS[THREAD_COUNTS.length - 1];
+
+        ObjectPool<FakeConnection> pool = ObjectPool.<FakeConnection>builder(() -> new FakeConnection(1))
+                .setMaxSize(maxThreads)
+                .setValidator(FakeConnection::isValid)
+                .setDestroyer(FakeConnection::close)
+                .build();
+        run(pool, maxThreads, borrows); // warm-up, also opens all connections
+
+        System.out.printf(Locale.ROOT, "%8s %10s %10s %10s %12s%n", "threads", "p50 ns", "p99 ns", "p99.9 ns", "borrows/sec");
+        for (int threads : THREAD_COUNTS) {
+            long begin = System.nanoTime();
+            long[] latencies = run(pool, threads, borrows);
+            long elapsed = System.nanoTime() - begin;
+            System.out.printf(Locale.ROOT, "%8d %10d %10d %10d %,12.0f%n", threads,
+                    percentile(latencies, 50), percentile(latencies, 99), percentile(latencies, 99.9),
+                    latencies.length * 1e9 / elapsed);
+        }
+        pool.close();
+    }
+
+    static long[] run(ObjectPool<FakeConnection> pool, int threads, int borrows) throws InterruptedException {
+        long[][] perThread = new long[threads][borrows];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            long[] samples = perThread[t];
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < borrows; i++) {
+                        long begin = System.nanoTime();
+                        ObjectPool.Lease<FakeConnection> lease = pool.borrow(1, TimeUnit.SECONDS);
+                        samples[i] = System.nanoTime() - begin;
+                        lease.get().getId();
+                        lease.close();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        long[] all = new long[threads * borrows];
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(perThread[t], 0, all, t * borrows, borrows);
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
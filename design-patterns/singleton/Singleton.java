@@ -27,27 +27,17 @@ Expose a getInstance() method.
 
 Then it lists real-world uses like loggers, DB connection pools, caches, thread pools, file system, print spooler, etc., and discusses pros/cons: global access & controlled lifecycle vs global state, testability and tight coupling concerns. 
 
+Each implementation is a public class in its own file (named below), so they compile together
+with SingletonBenchmark and SingletonStressHarness, which measure them.
+
 
 🧱 1. Lazy Initialization (❌ not thread-safe)
 
 Creates the instance only when it’s first requested.
 
-*/
-
-public class LazySingleton {
-    private static LazySingleton instance;
 
-    private LazySingleton() { }
-
-    public static LazySingleton getInstance() {
-        if (instance == null) {              // not thread-safe
-            instance = new LazySingleton();
-        }
-        return instance;
-    }
-}
+→ LazySingleton.java
 
-/*
 
 Simple, lazy-loaded.
 
@@ -56,22 +46,9 @@ But in multithreaded code, two threads could create two instances.
 🔒 2. Thread-Safe Singleton (synchronized)
 
 Adds synchronized to make getInstance() safe in multithreaded environments. 
-*/
-
-public class ThreadSafeSingleton {
-    private static ThreadSafeSingleton instance;
 
-    private ThreadSafeSingleton() { }
-
-    public static synchronized ThreadSafeSingleton getInstance() {
-        if (instance == null) {
-            instance = new ThreadSafeSingleton();
-        }
-        return instance;
-    }
-}
+→ ThreadSafeSingleton.java
 
-/*
 
 Thread-safe, but every call pays the cost of synchronization.
 
@@ -83,26 +60,9 @@ If the first check (instance == null) passes, we synchronize on the class object
 We check the same condition one more time because multiple threads may have passed the first check.
 The instance is created only if both checks pass.
 
-*/
-
-public class DCLSingleton {
-    private static volatile DCLSingleton instance;
 
-    private DCLSingleton() { }
-
-    public static DCLSingleton getInstance() {
-        if (instance == null) {                      // first check
-            synchronized (DCLSingleton.class) {
-                if (instance == null) {              // second check
-                    instance = new DCLSingleton();
-                }
-            }
-        }
-        return instance;
-    }
-}
+→ DCLSingleton.java
 
-/*
 
 Lazy + thread-safe + better performance than fully synchronized.
 
@@ -112,19 +72,9 @@ More complex and easy to get wrong if you forget volatile.
 
 Instance created when class is loaded; inherently thread-safe. 
 
-*/
-
-public class EagerSingleton {
-    private static final EagerSingleton INSTANCE = new EagerSingleton();
 
-    private EagerSingleton() { }
-
-    public static EagerSingleton getInstance() {
-        return INSTANCE;
-    }
-}
+→ EagerSingleton.java
 
-/*
 Simple & thread-safe.
 
 But not lazy – instance is created even if never used.
@@ -133,23 +83,9 @@ But not lazy – instance is created even if never used.
 
 Uses a static inner class that holds the instance; loaded only when needed. 
 
-*/
-
-public class BillPughSingleton {
-
-    private BillPughSingleton() { }
-
-    // Inner static helper class
-    private static class SingletonHelper {
-        private static final BillPughSingleton INSTANCE = new BillPughSingleton();
-    }
 
-    public static BillPughSingleton getInstance() {
-        return SingletonHelper.INSTANCE;
-    }
-}
+→ BillPughSingleton.java
 
-/*
 
 Lazy and thread-safe without explicit synchronization.
 
@@ -160,27 +96,9 @@ Very clean and efficient; the article calls this a great balance of simplicity +
 
 Like eager initialization, but with a static block so you can handle exceptions. 
 
-*/
-
-public class StaticBlockSingleton {
-    private static final StaticBlockSingleton INSTANCE;
 
-    static {
-        try {
-            INSTANCE = new StaticBlockSingleton();
-        } catch (Exception e) {
-            throw new RuntimeException("Error creating singleton", e);
-        }
-    }
+→ StaticBlockSingleton.java
 
-    private StaticBlockSingleton() { }
-
-    public static StaticBlockSingleton getInstance() {
-        return INSTANCE;
-    }
-}
-
-/*
 
 Thread-safe, allows handling initialization errors.
 
@@ -189,18 +107,9 @@ Still not lazy.
 🏆 7. Enum Singleton
 
 Uses Java enum, which the JVM guarantees is single-instance per constant, even with serialization and reflection. 
-*/
 
+→ EnumSingleton.java
 
-public enum EnumSingleton {
-    INSTANCE;
-
-    public void doSomething() {
-        System.out.println("Doing something with EnumSingleton");
-    }
-}
-
-/*
 
 Usage:
 
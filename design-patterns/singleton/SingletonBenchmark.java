@@ -0,0 +1,176 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/*
+Measures the seven Singleton.java strategies, so the hot-path choice is made on data:
+
+    1. steady-state getInstance() throughput at 1, 4, 16 and 64 threads (ops/sec, all threads together)
+    2. first-access latency: class initialization + first getInstance() on a freshly loaded copy
+
+Plain-Java harness in the spirit of JMH: warm-up iterations, then measured iterations, with
+results consumed by a blackhole so the JIT can't drop the calls. Each variant runs in its own
+forked JVM. Results go to stdout and to a JSON file.
+
+    java SingletonBenchmark [output.json] [measureMillis]
+*/
+class SingletonBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURE_ITERATIONS = 3;
+    private static final int FIRST_ACCESS_TRIALS = 50;
+
+    // Every call result goes through here. The volatile read keeps the call alive and costs the same for every variant.
+    static final class Blackhole {
+        private volatile Object never = new Object();
+        long hits;
+
+        void consume(Object o) {
+            if (o == never) {
+                hits++;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--variant")) {
+            runVariant(args[1], Long.parseLong(args[2]));
+            return;
+        }
+        String output = args.length > 0 ? args[0] : "singleton-benchmark.json";
+        long measureMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+        // One JVM per variant, like JMH forks: otherwise the accessor call site turns megamorphic
+        // after the first variant and every later one is measured through a slower virtual call.
+        List<String> results = new ArrayList<>();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        for (String variant : SingletonVariants.SINGLETON_JAVA) {
+            Process fork = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    "SingletonBenchmark", "--variant", variant, String.valueOf(measureMillis))
+                    .redirectErrorStream(true)
+                    .start();
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(fork.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (line.startsWith(RESULT_PREFIX)) {
+                        results.add("    " + line.substring(RESULT_PREFIX.length()));
+                    } else {
+                        System.out.println(line);
+                    }
+                }
+            }
+            if (fork.waitFor() != 0) {
+                throw new IllegalStateException("Benchmark fork for " + variant + " failed");
+            }
+        }
+
+        String json = "{\n  \"measureMillis\": " + measureMillis
+                + ",\n  \"iterations\": " + MEASURE_ITERATIONS
+                + ",\n  \"results\": [\n" + String.join(",\n", results) + "\n  ]\n}\n";
+        writeJson(output, json);
+        System.out.println("Wrote " + output);
+    }
+
+    private static final String RESULT_PREFIX = "RESULT ";
+
+    private static void runVariant(String variant, long measureMillis) throws InterruptedException {
+        long[] latencies = firstAccessLatencies(variant);
+        Supplier<Object> accessor = SingletonVariants.accessor(variant);
+        accessor.get(); // initialize once; throughput measures the steady state only
+
+        StringBuilder throughput = new StringBuilder();
+        for (int threads : THREAD_COUNTS) {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                run(accessor, threads, measureMillis / 2);
+            }
+            double[] scores = new double[MEASURE_ITERATIONS];
+            for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+                scores[i] = run(accessor, threads, measureMillis);
+            }
+            double mean = Arrays.stream(scores).average().orElse(0);
+            System.out.printf(Locale.ROOT, "%-22s threads=%-3d %,16.0f ops/sec%n", variant, threads, mean);
+            if (throughput.length() > 0) {
+                throughput.append(", ");
+            }
+            throughput.append(String.format(Locale.ROOT, "\"%d\": %.0f", threads, mean));
+        }
+
+        System.out.printf(Locale.ROOT, "%-22s first access: median %,d ns, max %,d ns%n",
+                variant, percentile(latencies, 50), percentile(latencies, 100));
+        System.out.println(RESULT_PREFIX + String.format(Locale.ROOT,
+                "{\"variant\": \"%s\", \"opsPerSecByThreads\": {%s}, "
+                        + "\"firstAccessNanos\": {\"median\": %d, \"p90\": %d, \"max\": %d}}",
+                variant, throughput, percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 100)));
+    }
+
+    // Total getInstance() calls per second across all threads.
+    static double run(Supplier<Object> accessor, int threads, long millis) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] counts = new long[threads];
+        long deadline = System.nanoTime() + (millis + 50) * 1_000_000L; // +50ms for thread start-up
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                Blackhole bh = new Blackhole();
+                long ops = 0;
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        for (int i = 0; i < 1024; i++) {
+                            bh.consume(accessor.get());
+                        }
+                        ops += 1024;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                counts[id] = ops;
+                done.countDown();
+            });
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return Arrays.stream(counts).sum() * 1e9 / elapsed;
+    }
+
+    // Class init + first access of a brand-new copy of the class, once per trial.
+    static long[] firstAccessLatencies(String variant) {
+        // warm up class loading and reflection so the first trial doesn't pay for them
+        for (int i = 0; i < 5; i++) {
+            SingletonVariants.fresh(variant).access();
+        }
+        long[] nanos = new long[FIRST_ACCESS_TRIALS];
+        for (int i = 0; i < nanos.length; i++) {
+            SingletonVariants.Fresh fresh = SingletonVariants.fresh(variant);
+            long begin = System.nanoTime();
+            fresh.access();
+            nanos[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    static long percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static void writeJson(String path, String json) throws IOException {
+        Files.write(Paths.get(path), json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Test hook for SingletonStressHarness: every singleton constructor in this package reports itself here.
+
+A lazy singleton can race and construct twice yet hand every caller the same object (the last
+write to `instance` wins), so counting the instances callers got back misses the bug. Counting
+constructor calls doesn't. The optional delay holds each watched constructor open, so the
+threads that lose the race also get past `instance == null` and the race shows up reliably.
+
+Does nothing unless a class is being watched. SingletonVariants' isolating loader shares this
+one class with every fresh copy of a singleton, so the counters are keyed by Class.
+*/
+public final class SingletonProbe {
+
+    private static final ConcurrentHashMap<Class<?>, AtomicInteger> constructed = new ConcurrentHashMap<>();
+    private static volatile long constructorDelayNanos;
+
+    private SingletonProbe() {
+    }
+
+    // Called first thing in each singleton constructor. Public because the fresh copies are in
+    // another loader, i.e. another runtime package.
+    public static void constructed(Object instance) {
+        if (constructed.isEmpty()) {
+            return;
+        }
+        AtomicInteger count = constructed.get(instance.getClass());
+        if (count != null) {
+            count.incrementAndGet();
+            long delay = constructorDelayNanos;
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+        }
+    }
+
+    // Starts counting constructor calls of `type`; the counter is live.
+    static AtomicInteger watch(Class<?> type) {
+        return constructed.computeIfAbsent(type, k -> new AtomicInteger());
+    }
+
+    static void unwatch(Class<?> type) {
+        constructed.remove(type);
+    }
+
+    static void setConstructorDelay(long delay, TimeUnit unit) {
+        constructorDelayNanos = unit.toNanos(delay);
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Stress check: does each getInstance() really hand out one instance under contention?
+
+For every round a fresh, uninitialized copy of the class is loaded (see SingletonVariants),
+then thousands of threads are released from one gate at the same moment and all call
+getInstance(). Per variant we report:
+
+    racy rounds          - rounds where the constructor ran more than once
+    max constructed      - most constructor calls in one round (counted through SingletonProbe)
+    max returned         - most distinct instances handed back to callers in one round
+    exceptions           - e.g. LoggerThreadSafeSingleton's "Instance already created"
+
+Constructions are what count: a racy singleton usually hands everyone the object that was
+written last, so "max returned" can be 1 while the constructor - and whatever it opened or
+registered - ran many times. Each watched constructor is held open for the constructor delay
+(1 ms by default), so every thread that is released alongside the first one also finds
+`instance == null`; the racy variants (LazySingleton, LoggerLazyInitializationSingleton) then
+fail in every round, and the thread-safe ones must still construct exactly once. If a
+thread-safe variant races or throws, the harness exits with status 1; so it does if a racy one
+is not caught, since then the harness itself isn't working.
+
+    java SingletonStressHarness [threadsPerRound] [rounds] [constructorDelayMicros]
+*/
+class SingletonStressHarness {
+
+    static final class Result {
+        final String variant;
+        int racyRounds;
+        int maxConstructed;
+        int maxReturned;
+        int exceptions;
+
+        Result(String variant) {
+            this.variant = variant;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long delayMicros = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        SingletonProbe.setConstructorDelay(delayMicros, TimeUnit.MICROSECONDS);
+
+        List<String> variants = new ArrayList<>(SingletonVariants.SINGLETON_JAVA);
+        variants.addAll(SingletonVariants.LOGGERS);
+
+        boolean regression = false;
+        System.out.printf(Locale.ROOT, "%d threads x %d rounds per variant, constructor delay %d us%n",
+                threads, rounds, delayMicros);
+        System.out.printf(Locale.ROOT, "%-36s %12s %16s %13s %11s  %s%n",
+                "variant", "racy rounds", "max constructed", "max returned", "exceptions", "verdict");
+        for (String variant : variants) {
+            Result result = stress(variant, threads, rounds);
+            boolean expectedSafe = !SingletonVariants.NOT_THREAD_SAFE.contains(variant);
+            boolean failed = result.racyRounds > 0 || result.exceptions > 0;
+            String verdict;
+            if (expectedSafe) {
+                verdict = failed ? "REGRESSION" : "ok";
+                regression |= failed;
+            } else {
+                verdict = failed ? "unsafe (race observed, as expected)" : "MISSED (race not observed)";
+                regression |= !failed;
+            }
+            System.out.printf(Locale.ROOT, "%-36s %12d %16d %13d %11d  %s%n",
+                    variant, result.racyRounds, result.maxConstructed, result.maxReturned, result.exceptions, verdict);
+        }
+        if (regression) {
+            System.exit(1);
+        }
+    }
+
+    static Result stress(String variant, int threads, int rounds) throws InterruptedException {
+        Result result = new Result(variant);
+        for (int round = 0; round < rounds; round++) {
+            SingletonVariants.Fresh fresh = SingletonVariants.fresh(variant);
+            AtomicInteger constructed = SingletonProbe.watch(fresh.type());
+            Object[] seen = new Object[threads];
+            AtomicInteger exceptions = new AtomicInteger();
+            CountDownLatch ready = new CountDownLatch(threads);
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                Thread worker = new Thread(() -> {
+                    ready.countDown();
+                    try {
+                        gate.await();
+                        seen[id] = fresh.access();
+                    } catch (RuntimeException e) {
+                        exceptions.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }, "stress-" + t);
+                worker.setDaemon(true);
+                worker.start();
+            }
+            ready.await();
+            gate.countDown();
+            done.await();
+            SingletonProbe.unwatch(fresh.type());
+
+            Set<Object> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Object instance : seen) {
+                if (instance != null) {
+                    distinct.add(instance);
+                }
+            }
+            if (constructed.get() > 1) {
+                result.racyRounds++;
+            }
+            result.maxConstructed = Math.max(result.maxConstructed, constructed.get());
+            result.maxReturned = Math.max(result.maxReturned, distinct.size());
+            result.exceptions += exceptions.get();
+        }
+        return result;
+    }
+}
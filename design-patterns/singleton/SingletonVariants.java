@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/*
+The singleton implementations in this package, and a way to load any of them "fresh".
+
+Static state lives per class loader, so loading a variant through a new IsolatingLoader gives
+a brand-new, uninitialized copy of the class: its first access runs class initialization again
+and its instance field starts out null. Benchmarks and stress runs use this to repeat the
+first-access / first-construction path as often as they like inside one JVM.
+*/
+final class SingletonVariants {
+
+    // The seven strategies from Singleton.java
+    static final List<String> SINGLETON_JAVA = Arrays.asList(
+            "LazySingleton", "ThreadSafeSingleton", "DCLSingleton", "EagerSingleton",
+            "BillPughSingleton", "StaticBlockSingleton", "EnumSingleton");
+
+    // The logger singletons that have their own files
+    static final List<String> LOGGERS = Arrays.asList(
+            "LoggerLazyInitializationSingleton", "LoggerEagerInitializationSingleton", "LoggerThreadSafeSingleton");
+
+    // Documented as racy: two threads can both see null and both construct.
+    static final List<String> NOT_THREAD_SAFE = Arrays.asList(
+            "LazySingleton", "LoggerLazyInitializationSingleton");
+
+    private SingletonVariants() {
+    }
+
+    // Accessor in the application class loader, for steady-state measurements.
+    static Supplier<Object> accessor(String className) {
+        switch (className) {
+            case "LazySingleton": return LazySingleton::getInstance;
+            case "ThreadSafeSingleton": return ThreadSafeSingleton::getInstance;
+            case "DCLSingleton": return DCLSingleton::getInstance;
+            case "EagerSingleton": return EagerSingleton::getInstance;
+            case "BillPughSingleton": return BillPughSingleton::getInstance;
+            case "StaticBlockSingleton": return StaticBlockSingleton::getInstance;
+            case "EnumSingleton": return () -> EnumSingleton.INSTANCE;
+            default: throw new IllegalArgumentException("Unknown singleton: " + className);
+        }
+    }
+
+    // Loads `className` in a new loader without initializing it. Call access() on the result to get the instance.
+    static Fresh fresh(String className) {
+        try {
+            Class<?> type = Class.forName(className, false, new IsolatingLoader());
+            return new Fresh(type);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Cannot load " + className, e);
+        }
+    }
+
+    static final class Fresh {
+        private final Class<?> type;
+        private final Method getInstance;
+
+        private Fresh(Class<?> type) throws NoSuchMethodException {
+            this.type = type;
+            this.getInstance = type.isEnum() ? null : type.getDeclaredMethod("getInstance");
+            if (getInstance != null) {
+                getInstance.setAccessible(true);
+            }
+        }
+
+        // The isolated copy of the class; it is not initialized until access().
+        Class<?> type() {
+            return type;
+        }
+
+        // First call triggers class initialization of the isolated copy.
+        Object access() {
+            try {
+                return getInstance != null ? getInstance.invoke(null) : type.getEnumConstants()[0];
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException(cause);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // Defines every class of this (default) package itself and delegates the JDK to the parent.
+    // The whole package has to be redefined: a package-private class like LogRingBuffer is only
+    // accessible from classes of the same loader. SingletonProbe is the exception - it is shared,
+    // so the harness sees what every fresh copy reports to it (its only use is static calls).
+    private static final class IsolatingLoader extends ClassLoader {
+
+        IsolatingLoader() {
+            super(SingletonVariants.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.indexOf('.') >= 0 || name.equals("SingletonProbe")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    byte[] bytes = readClassFile(name);
+                    c = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+
+        private byte[] readClassFile(String name) throws ClassNotFoundException {
+            try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                if (in == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+// Singleton strategy 6. Static block initialization - see Singleton.java for how it compares to the others.
+public class StaticBlockSingleton {
+    private static final StaticBlockSingleton INSTANCE;
+
+    static {
+        try {
+            INSTANCE = new StaticBlockSingleton();
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating singleton", e);
+        }
+    }
+
+    private StaticBlockSingleton() {
+        SingletonProbe.constructed(this); // counted by SingletonStressHarness
+    }
+
+    public static StaticBlockSingleton getInstance() {
+        return INSTANCE;
+    }
+}
@@ -23,5 +23,22 @@ class Aggregation {
         List<Professor>profs = List.of(p1,p2);
         Department csDept = new Department("Computer Science", profs);
         csDept.printProfessors();
+
+        // Concurrent mode: readers get snapshots, updates are applied in batches
+        Department mathDept = Department.concurrent("Mathematics", profs); // p1 and p2 are shared with CS
+        List<Professor> before = mathDept.getProfessors();
+        mathDept.updateProfessors(batch -> batch.remove(p2).add(new Professor("Dr. Lee")));
+        System.out.println(before.size() + " professors in the old snapshot");
+        mathDept.printProfessors();
+
+        // Reverse lookup: which departments is a professor in?
+        MembershipIndex memberships = new MembershipIndex();
+        memberships.addAll(csDept, profs); // plain department: changes to `profs` aren't seen
+        memberships.track(mathDept);        // concurrent department: its updates reach the index
+        for (Department department : memberships.departmentsOf(p1)) {
+            System.out.println(p1.getName() + " is in " + department.getName());
+        }
+        mathDept.removeProfessor(p1);
+        System.out.println(p1.getName() + " after leaving Mathematics: " + memberships.degreeOf(p1) + " department(s)");
     }
 }
\ No newline at end of file
@@ -1,18 +1,75 @@
 import java.util.*;
+import java.util.function.Consumer;
 
 class Department {
     private String name;
-    private List<Professor>professors;
+    private List<Professor>professors;   // plain mode: the caller's list
+    private final ProfessorRoster roster; // concurrent mode
 
     public Department(String name, List<Professor>professors){
         this.name = name;
         this.professors = professors;
+        this.roster = null;
+    }
+
+    private Department(String name, ProfessorRoster roster){
+        this.name = name;
+        this.roster = roster;
+    }
+
+    // A department whose professors can be updated while other threads read them (see ProfessorRoster).
+    public static Department concurrent(String name, Collection<Professor> professors){
+        return new Department(name, new ProfessorRoster(professors));
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public boolean isConcurrent(){
+        return roster != null;
+    }
+
+    // Concurrent mode: an immutable snapshot. Plain mode: a read-only view of the list.
+    public List<Professor> getProfessors(){
+        return roster != null ? roster.snapshot() : Collections.unmodifiableList(professors);
+    }
+
+    public void addProfessor(Professor professor){
+        requireConcurrent().add(professor);
+    }
+
+    public void removeProfessor(Professor professor){
+        requireConcurrent().remove(professor);
+    }
+
+    // Applies all the additions and removals in one update.
+    public void updateProfessors(Consumer<ProfessorRoster.Batch> changes){
+        requireConcurrent().update(changes);
+    }
+
+    // Concurrent mode only: a plain department can't see changes to the caller's list.
+    public void addListener(ProfessorRoster.Listener listener){
+        requireConcurrent().addListener(listener);
+    }
+
+    public void removeListener(ProfessorRoster.Listener listener){
+        requireConcurrent().removeListener(listener);
     }
 
     public void printProfessors(){
+        // One snapshot for the whole listing, so it's consistent even if the roster changes meanwhile.
+        List<Professor> current = getProfessors();
         System.out.println("Professors in " + name + " Department:");
-        for(Professor professor: professors){
+        for(Professor professor: current){
             System.out.println("- " + professor.getName());
         }
     }
-}
\ No newline at end of file
+
+    private ProfessorRoster requireConcurrent(){
+        if (roster == null) {
+            throw new IllegalStateException(name + " holds the caller's list; use Department.concurrent() to update it");
+        }
+        return roster;
+    }
+}
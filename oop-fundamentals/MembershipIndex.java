@@ -0,0 +1,508 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+Which professors are in which departments, both ways round. Aggregation lets one professor
+belong to several departments; Department only knows its own professors, so without this
+"which departments is Dr. Smith in" means scanning every department.
+
+Each professor and each department is interned once: it gets a small int id (0, 1, 2, ... in
+first-seen order) from an open-addressing table of ints. Memberships are then ints only:
+per professor a fixed row of 4 ints in one shared array (how many departments, and the
+first three department ids), per department an int[] of professor ids. departmentsOf() and
+professorsOf() cost O(degree), and memory is about 20-25 bytes per membership instead of map
+entries and lists of references.
+
+add()/remove() update both sides incrementally. removeProfessor()/removeDepartment() forget
+that member at once: the index drops its reference and its id is reused by the next new
+member. A member left without memberships by remove() is forgotten in a batch, once such
+members outnumber the ones with memberships (or on compact()) - a professor moved from one
+department to another isn't forgotten and re-interned in between. So the tables grow with
+the members held, not with everyone ever seen. Objects are matched with equals()/hashCode(),
+i.e. by identity for Professor and Department.
+
+Keeping the index in step with the departments:
+    track(department)    a concurrent Department publishes every addProfessor(),
+                         removeProfessor() and updateProfessors() to the index; untrack()
+                         stops that and removes its memberships.
+    add()/addAll()       for plain Departments (they hold the caller's list, whose changes
+                         nobody sees): callers must mirror every change with add()/remove().
+
+Thread-safe: every method takes the index's lock, as tracked departments update it from
+their writers' threads. Lists returned are copies.
+*/
+class MembershipIndex {
+    private static final int[] NONE = new int[0];
+
+    private final Interner<Professor> professors = new Interner<>();
+    private final Interner<Department> departments = new Interner<>();
+    private final Adjacency departmentsByProfessor = new Adjacency(3);
+    private final Adjacency professorsByDepartment = new Adjacency(0);
+    private final Map<Department, Tracking> tracked = new HashMap<>();
+    private long memberships;
+
+    // Adds the department's professors and keeps following its updates. Returns false if it
+    // was tracked already. Throws IllegalStateException for a plain Department.
+    public boolean track(Department department) {
+        Tracking listener = new Tracking(department);
+        synchronized (this) {
+            if (tracked.putIfAbsent(department, listener) != null) {
+                return false;
+            }
+        }
+        // not under this index's lock: the department calls the listener under its own lock,
+        // and its writers take the two locks in that order
+        try {
+            department.addListener(listener);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                tracked.remove(department);
+            }
+            throw e;
+        }
+        return true;
+    }
+
+    // Stops following the department and removes its memberships. Returns false if it wasn't tracked.
+    public boolean untrack(Department department) {
+        Tracking listener;
+        synchronized (this) {
+            listener = tracked.remove(department);
+        }
+        if (listener == null) {
+            return false;
+        }
+        department.removeListener(listener);
+        removeDepartment(department);
+        return true;
+    }
+
+    private synchronized void apply(Tracking tracking, Collection<Professor> added, Collection<Professor> removed) {
+        if (tracked.get(tracking.department) != tracking) {
+            return; // untracked meanwhile
+        }
+        for (Professor professor : removed) {
+            remove(tracking.department, professor);
+        }
+        for (Professor professor : added) {
+            add(tracking.department, professor);
+        }
+    }
+
+    // Returns false if the professor was already in the department.
+    public synchronized boolean add(Department department, Professor professor) {
+        int p = professors.intern(professor);
+        int d = departments.intern(department);
+        if (departmentsByProfessor.contains(p, d)) {
+            return false;
+        }
+        departmentsByProfessor.add(p, d);
+        professorsByDepartment.add(d, p);
+        memberships++;
+        return true;
+    }
+
+    // Adds the department's current professors, once: later changes are not seen (see track()).
+    public void addAll(Department department) {
+        addAll(department, department.getProfessors());
+    }
+
+    public synchronized void addAll(Department department, Collection<? extends Professor> members) {
+        for (Professor professor : members) {
+            add(department, professor);
+        }
+    }
+
+    // Returns false if the professor wasn't in the department.
+    public synchronized boolean remove(Department department, Professor professor) {
+        int p = professors.idOf(professor);
+        int d = departments.idOf(department);
+        if (p < 0 || d < 0 || !departmentsByProfessor.remove(p, d)) {
+            return false;
+        }
+        professorsByDepartment.remove(d, p);
+        memberships--;
+        compactIfSparse();
+        return true;
+    }
+
+    // Removes the professor from every department; O(sum of those departments' sizes).
+    public synchronized int removeProfessor(Professor professor) {
+        int p = professors.idOf(professor);
+        if (p < 0) {
+            return 0;
+        }
+        int[] ids = departmentsByProfessor.copyOf(p);
+        for (int d : ids) {
+            departmentsByProfessor.remove(p, d);
+            professorsByDepartment.remove(d, p);
+        }
+        memberships -= ids.length;
+        forget(professors, departmentsByProfessor, p);
+        compactIfSparse();
+        return ids.length;
+    }
+
+    // Removes every membership of the department; O(its size).
+    public synchronized int removeDepartment(Department department) {
+        int d = departments.idOf(department);
+        if (d < 0) {
+            return 0;
+        }
+        int[] ids = professorsByDepartment.copyOf(d);
+        for (int p : ids) {
+            professorsByDepartment.remove(d, p);
+            departmentsByProfessor.remove(p, d);
+        }
+        memberships -= ids.length;
+        forget(departments, professorsByDepartment, d);
+        compactIfSparse();
+        return ids.length;
+    }
+
+    // Forgets every professor and department left without memberships.
+    public synchronized void compact() {
+        sweep(professors, departmentsByProfessor);
+        sweep(departments, professorsByDepartment);
+    }
+
+    public synchronized List<Department> departmentsOf(Professor professor) {
+        return new View<>(departments.resolve(departmentsByProfessor.copyOf(professors.idOf(professor))));
+    }
+
+    public synchronized List<Professor> professorsOf(Department department) {
+        return new View<>(professors.resolve(professorsByDepartment.copyOf(departments.idOf(department))));
+    }
+
+    // departmentsOf() without building a list. `action` runs under the index's lock, so it must
+    // not update a tracked department (that department's writer may be waiting for this lock).
+    public synchronized void forEachDepartmentOf(Professor professor, Consumer<? super Department> action) {
+        int p = professors.idOf(professor);
+        if (p >= 0) {
+            for (int i = 0, n = departmentsByProfessor.size(p); i < n; i++) {
+                action.accept(departments.get(departmentsByProfessor.get(p, i)));
+            }
+        }
+    }
+
+    public synchronized boolean isMember(Department department, Professor professor) {
+        int p = professors.idOf(professor);
+        int d = departments.idOf(department);
+        return p >= 0 && d >= 0 && departmentsByProfessor.contains(p, d);
+    }
+
+    public synchronized int degreeOf(Professor professor) {
+        return departmentsByProfessor.size(professors.idOf(professor));
+    }
+
+    public synchronized int sizeOf(Department department) {
+        return professorsByDepartment.size(departments.idOf(department));
+    }
+
+    // Professors with at least one membership.
+    public synchronized int professorCount() {
+        return departmentsByProfessor.nonEmpty;
+    }
+
+    // Departments with at least one professor.
+    public synchronized int departmentCount() {
+        return professorsByDepartment.nonEmpty;
+    }
+
+    public synchronized long membershipCount() {
+        return memberships;
+    }
+
+    private void compactIfSparse() {
+        if (professors.live - departmentsByProfessor.nonEmpty > Math.max(16, departmentsByProfessor.nonEmpty)) {
+            sweep(professors, departmentsByProfessor);
+        }
+        if (departments.live - professorsByDepartment.nonEmpty > Math.max(16, professorsByDepartment.nonEmpty)) {
+            sweep(departments, professorsByDepartment);
+        }
+    }
+
+    // O(ids handed out); compactIfSparse() runs it only after as many removals as there are members.
+    private static void sweep(Interner<?> interner, Adjacency adjacency) {
+        for (int id = 0; id < interner.size; id++) {
+            if (interner.get(id) != null && adjacency.size(id) == 0) {
+                forget(interner, adjacency, id);
+            }
+        }
+    }
+
+    // `id` must have no memberships left.
+    private static void forget(Interner<?> interner, Adjacency adjacency, int id) {
+        adjacency.clear(id);
+        interner.release(id);
+    }
+
+    // The index's listener on one tracked department.
+    private final class Tracking implements ProfessorRoster.Listener {
+        final Department department;
+
+        Tracking(Department department) {
+            this.department = department;
+        }
+
+        @Override
+        public void rosterChanged(Collection<Professor> added, Collection<Professor> removed) {
+            apply(this, added, removed);
+        }
+    }
+
+    // Gives each distinct object an int id and maps it back. The hash table holds only ids
+    // (id + 1, 0 = empty); keys are compared through byId. Released ids go on a free list
+    // and are handed out again before new ones.
+    private static final class Interner<T> {
+        private int[] table = new int[32]; // open addressing, linear probing
+        private Object[] byId = new Object[16];
+        private int size; // ids handed out so far, released ones included
+        private int live;
+        private int[] free = new int[8];
+        private int freeCount;
+
+        int idOf(Object key) {
+            int mask = table.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                int entry = table[i];
+                if (entry == 0) {
+                    return -1;
+                }
+                Object candidate = byId[entry - 1];
+                if (candidate == key || candidate.equals(key)) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        int intern(T key) {
+            if (key == null) {
+                throw new IllegalArgumentException("null member");
+            }
+            int id = idOf(key);
+            if (id >= 0) {
+                return id;
+            }
+            if (freeCount == 0 && size == 1 << 30) {
+                throw new IllegalStateException("too many members");
+            }
+            if ((live + 1) * 2L > table.length) { // load factor <= 0.5
+                rehash(table.length * 2);
+            }
+            if (freeCount > 0) {
+                id = free[--freeCount];
+            } else {
+                id = size++;
+                if (id == byId.length) {
+                    byId = Arrays.copyOf(byId, byId.length + (byId.length >> 1));
+                }
+            }
+            byId[id] = key;
+            put(key, id);
+            live++;
+            return id;
+        }
+
+        // Forgets the object with this id; the id goes to the next intern() of a new object.
+        void release(int id) {
+            int mask = table.length - 1;
+            int i = slot(byId[id], mask);
+            while (table[i] != id + 1) {
+                i = (i + 1) & mask;
+            }
+            // backward-shift deletion: pull later entries of the probe run into the hole, as
+            // long as that doesn't move one in front of its home slot
+            for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+                int home = slot(byId[table[j] - 1], mask);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    table[i] = table[j];
+                    i = j;
+                }
+            }
+            table[i] = 0;
+            byId[id] = null;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = id;
+            live--;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int id) {
+            return (T) byId[id];
+        }
+
+        Object[] resolve(int[] ids) {
+            Object[] objects = new Object[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                objects[i] = byId[ids[i]];
+            }
+            return objects;
+        }
+
+        private void put(Object key, int id) {
+            int mask = table.length - 1;
+            int i = slot(key, mask);
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = id + 1;
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            for (int id = 0; id < size; id++) {
+                if (byId[id] != null) {
+                    put(byId[id], id);
+                }
+            }
+        }
+
+        private static int slot(Object key, int mask) {
+            int h = key.hashCode() * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+
+    // For each id, the list of ids on the other side. Each id has a fixed row in one shared
+    // int[]: the list's size, then the first `inline` entries; longer lists continue in an
+    // int[] of their own. Professors are in a few departments each, so their lists fit in
+    // the row and cost no object at all; departments have inline = 0.
+    private static final class Adjacency {
+        private final int inline;
+        private final int stride;
+        private int[] rows;
+        private int[][] overflow = new int[0][];
+        private int nonEmpty; // ids with at least one entry
+
+        Adjacency(int inline) {
+            this.inline = inline;
+            this.stride = inline + 1;
+            this.rows = new int[16 * stride];
+        }
+
+        void add(int from, int to) {
+            long base = (long) from * stride;
+            if (base + stride > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("too many members");
+            }
+            if (base >= rows.length) {
+                rows = Arrays.copyOf(rows, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max(base + stride, rows.length + (long) (rows.length >> 1) / stride * stride)));
+            }
+            int size = rows[(int) base];
+            if (size < inline) {
+                rows[(int) base + 1 + size] = to;
+            } else {
+                if (from >= overflow.length) {
+                    overflow = Arrays.copyOf(overflow, Math.max(from + 1, overflow.length + (overflow.length >> 1)));
+                }
+                int[] more = overflow[from];
+                int at = size - inline;
+                if (more == null) {
+                    overflow[from] = more = new int[4];
+                } else if (at == more.length) {
+                    overflow[from] = more = Arrays.copyOf(more, at + (at >> 1));
+                }
+                more[at] = to;
+            }
+            rows[(int) base] = size + 1;
+            if (size == 0) {
+                nonEmpty++;
+            }
+        }
+
+        boolean contains(int from, int to) {
+            return indexOf(from, to) >= 0;
+        }
+
+        // Order isn't kept: the last entry takes the removed one's place.
+        boolean remove(int from, int to) {
+            int at = indexOf(from, to);
+            if (at < 0) {
+                return false;
+            }
+            int last = size(from) - 1;
+            set(from, at, get(from, last));
+            rows[from * stride] = last;
+            if (last == 0) {
+                nonEmpty--;
+            }
+            return true;
+        }
+
+        int size(int from) {
+            return from < 0 || (long) from * stride >= rows.length ? 0 : rows[from * stride];
+        }
+
+        int get(int from, int index) {
+            return index < inline ? rows[from * stride + 1 + index] : overflow[from][index - inline];
+        }
+
+        // Drops the overflow list of an emptied id before the id is reused.
+        void clear(int from) {
+            if (from < overflow.length) {
+                overflow[from] = null;
+            }
+        }
+
+        int[] copyOf(int from) {
+            int size = size(from);
+            if (size == 0) {
+                return NONE;
+            }
+            int[] ids = new int[size];
+            int inRow = Math.min(size, inline);
+            System.arraycopy(rows, from * stride + 1, ids, 0, inRow);
+            if (size > inline) {
+                System.arraycopy(overflow[from], 0, ids, inline, size - inline);
+            }
+            return ids;
+        }
+
+        private void set(int from, int index, int value) {
+            if (index < inline) {
+                rows[from * stride + 1 + index] = value;
+            } else {
+                overflow[from][index - inline] = value;
+            }
+        }
+
+        private int indexOf(int from, int to) {
+            for (int i = 0, n = size(from); i < n; i++) {
+                if (get(from, i) == to) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Read-only list over members resolved while the index was locked; ids can be reused
+    // afterwards, so they aren't kept.
+    private static final class View<T> extends AbstractList<T> {
+        private final Object[] members;
+
+        View(Object[] members) {
+            this.members = members;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) members[index];
+        }
+
+        @Override
+        public int size() {
+            return members.length;
+        }
+    }
+}
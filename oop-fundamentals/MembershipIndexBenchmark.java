@@ -0,0 +1,145 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/*
+MembershipIndex at directory scale: heap footprint and reverse-lookup latency, against the
+usual object version (HashMap<Professor, List<Department>> plus HashMap<Department,
+List<Professor>>), and against scanning every department, which is all Department offers.
+
+Every professor gets 1..maxDegree random departments. Heap is measured as used memory after
+GC with only one of the two indexes reachable; the Professor and Department objects
+themselves are shared and not counted.
+
+    java -Xmx2g MembershipIndexBenchmark [professors] [departments] [maxDegree]
+*/
+class MembershipIndexBenchmark {
+
+    static volatile long sink;
+
+    public static void main(String[] args) {
+        int professorCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int departmentCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int maxDegree = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Professor[] professors = new Professor[professorCount];
+        for (int i = 0; i < professorCount; i++) {
+            professors[i] = new Professor("Dr. " + i);
+        }
+        Department[] departments = new Department[departmentCount];
+        for (int i = 0; i < departmentCount; i++) {
+            departments[i] = new Department("Department " + i, List.of());
+        }
+        Random random = new Random(17);
+        int[][] memberOf = new int[professorCount][];
+        long total = 0;
+        for (int i = 0; i < professorCount; i++) {
+            memberOf[i] = random.ints(0, departmentCount).distinct().limit(1 + random.nextInt(maxDegree)).toArray();
+            total += memberOf[i].length;
+        }
+        System.out.printf(Locale.ROOT, "%,d professors, %,d departments, %,d memberships%n",
+                professorCount, departmentCount, total);
+
+        long baseline = usedHeap();
+        Map<Professor, List<Department>> departmentsOf = new HashMap<>();
+        Map<Department, List<Professor>> professorsOf = new HashMap<>();
+        for (int i = 0; i < professorCount; i++) {
+            for (int d : memberOf[i]) {
+                departmentsOf.computeIfAbsent(professors[i], k -> new ArrayList<>(2)).add(departments[d]);
+                professorsOf.computeIfAbsent(departments[d], k -> new ArrayList<>()).add(professors[i]);
+            }
+        }
+        long mapBytes = usedHeap() - baseline;
+        sink = departmentsOf.size() + professorsOf.size();
+
+        long[] lookups = new long[200_000];
+        int[] picks = random.ints(lookups.length, 0, professorCount).toArray();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < lookups.length; i++) {
+                long begin = System.nanoTime();
+                sink += departmentsOf.get(professors[picks[i]]).size();
+                lookups[i] = System.nanoTime() - begin;
+            }
+        }
+        String mapLatency = percentiles(lookups);
+        departmentsOf = null;
+        professorsOf = null;
+
+        baseline = usedHeap();
+        MembershipIndex index = new MembershipIndex();
+        long begin = System.nanoTime();
+        for (int i = 0; i < professorCount; i++) {
+            for (int d : memberOf[i]) {
+                index.add(departments[d], professors[i]);
+            }
+        }
+        long build = System.nanoTime() - begin;
+        long indexBytes = usedHeap() - baseline;
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < lookups.length; i++) {
+                begin = System.nanoTime();
+                sink += index.departmentsOf(professors[picks[i]]).size();
+                lookups[i] = System.nanoTime() - begin;
+            }
+        }
+        String indexLatency = percentiles(lookups);
+
+        System.out.printf(Locale.ROOT, "%-36s %,8.1f MB  %5.1f bytes/membership  departmentsOf %s%n",
+                "HashMap<Professor, List<Department>> x2", mapBytes / 1e6, (double) mapBytes / total, mapLatency);
+        System.out.printf(Locale.ROOT, "%-36s %,8.1f MB  %5.1f bytes/membership  departmentsOf %s%n",
+                "MembershipIndex", indexBytes / 1e6, (double) indexBytes / total, indexLatency);
+        System.out.printf(Locale.ROOT, "%-36s %,8.1f ms (%.0f ns/membership)%n",
+                "MembershipIndex build", build / 1e6, (double) build / total);
+
+        // What Department alone offers: look through every department's professors.
+        List<List<Professor>> rosters = new ArrayList<>(departmentCount);
+        for (Department department : departments) {
+            rosters.add(index.professorsOf(department));
+        }
+        begin = System.nanoTime();
+        int scans = 20;
+        for (int i = 0; i < scans; i++) {
+            Professor wanted = professors[picks[i]];
+            for (List<Professor> roster : rosters) {
+                sink += roster.contains(wanted) ? 1 : 0;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-36s %,8.1f ms per lookup%n", "scan every department", (System.nanoTime() - begin) / 1e6 / scans);
+
+        // Incremental updates: move 100k professors to another department.
+        int moves = Math.min(100_000, professorCount);
+        begin = System.nanoTime();
+        for (int i = 0; i < moves; i++) {
+            int p = picks[i % picks.length];
+            Professor professor = professors[p];
+            Department from = departments[memberOf[p][0]];
+            int target = random.nextInt(departmentCount);
+            Department to = departments[target];
+            if (!index.isMember(to, professor) && index.remove(from, professor)) {
+                index.add(to, professor);
+                memberOf[p][0] = target;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-36s %,8.1f ns per move%n", "remove + add", (System.nanoTime() - begin) / (double) moves);
+    }
+
+    static String percentiles(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return String.format(Locale.ROOT, "p50 %,5d ns  p99 %,6d ns",
+                sorted[sorted.length / 2], sorted[sorted.length * 99 / 100]);
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,216 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/*
+A department's professors that many threads can read while a few update it.
+
+The roster is an immutable array held in a volatile field. Readers take the current array
+(snapshot()) and iterate it without any lock - they can't block and never see a half-applied
+update. Writers build a new array and swap it in (copy-on-write), one at a time under a lock.
+
+Copying costs O(size) per write, so updates are batched: update(batch -> ...) collects any
+number of additions and removals and applies them with one copy, e.g. a whole HR sync.
+
+Listeners (e.g. a MembershipIndex tracking the department) are told what each update
+actually added and removed. They are called by the writer under the write lock, after the
+new snapshot is in place, so they see the updates one at a time and in order.
+
+Professors are compared with equals() (identity, as Professor doesn't override it).
+*/
+class ProfessorRoster {
+    private static final Professor[] EMPTY = new Professor[0];
+
+    private volatile Snapshot snapshot;
+    private final Object writeLock = new Object();
+    private final List<Listener> listeners = new ArrayList<>(); // guarded by writeLock
+
+    public ProfessorRoster() {
+        this.snapshot = new Snapshot(EMPTY, 0);
+    }
+
+    public ProfessorRoster(Collection<? extends Professor> professors) {
+        this.snapshot = new Snapshot(professors.toArray(EMPTY), 0);
+    }
+
+    // An immutable list of the professors at one point in time.
+    public static final class Snapshot extends AbstractList<Professor> implements RandomAccess {
+        private final Professor[] professors;
+        private final long version;
+
+        private Snapshot(Professor[] professors, long version) {
+            this.professors = professors;
+            this.version = version;
+        }
+
+        @Override
+        public Professor get(int index) {
+            return professors[index];
+        }
+
+        @Override
+        public int size() {
+            return professors.length;
+        }
+
+        @Override
+        public void forEach(Consumer<? super Professor> action) {
+            for (Professor professor : professors) {
+                action.accept(professor);
+            }
+        }
+
+        // Number of updates applied before this snapshot.
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    // Told about every change to the roster. Runs under the roster's write lock: it must not
+    // update this roster, and should be quick - the writer waits for it.
+    public interface Listener {
+        void rosterChanged(Collection<Professor> added, Collection<Professor> removed);
+    }
+
+    // Additions and removals applied together by update().
+    public static final class Batch {
+        private final Set<Professor> additions = new LinkedHashSet<>();
+        private final Set<Professor> removals = new HashSet<>();
+
+        public Batch add(Professor professor) {
+            additions.add(professor);
+            removals.remove(professor);
+            return this;
+        }
+
+        public Batch addAll(Collection<? extends Professor> professors) {
+            for (Professor professor : professors) {
+                add(professor);
+            }
+            return this;
+        }
+
+        public Batch remove(Professor professor) {
+            removals.add(professor);
+            additions.remove(professor);
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return additions.isEmpty() && removals.isEmpty();
+        }
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    // Registers `listener` and, in the same step, tells it the current professors as added, so
+    // it misses no update between the two.
+    public void addListener(Listener listener) {
+        synchronized (writeLock) {
+            listeners.add(listener);
+            listener.rosterChanged(snapshot, Collections.emptyList());
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        synchronized (writeLock) {
+            listeners.remove(listener);
+        }
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    public boolean contains(Professor professor) {
+        return snapshot.contains(professor);
+    }
+
+    public void add(Professor professor) {
+        update(batch -> batch.add(professor));
+    }
+
+    public void remove(Professor professor) {
+        update(batch -> batch.remove(professor));
+    }
+
+    // Applies everything `changes` adds to the batch as one update (one copy). Removals go
+    // first, then additions are appended; professors already in the roster aren't added twice.
+    public Snapshot update(Consumer<Batch> changes) {
+        Batch batch = new Batch();
+        changes.accept(batch);
+        if (batch.isEmpty()) {
+            return snapshot;
+        }
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Professor[] old = current.professors;
+            Set<Professor> present = new HashSet<>(Math.max(16, (int) (old.length / .75f) + 1));
+            Professor[] next = new Professor[old.length + batch.additions.size()];
+            List<Professor> removed = new ArrayList<>();
+            int size = 0;
+            for (Professor professor : old) {
+                if (!batch.removals.contains(professor)) {
+                    next[size++] = professor;
+                    present.add(professor);
+                } else {
+                    removed.add(professor);
+                }
+            }
+            int kept = size;
+            for (Professor professor : batch.additions) {
+                if (present.add(professor)) {
+                    next[size++] = professor;
+                }
+            }
+            Snapshot updated = new Snapshot(size == next.length ? next : Arrays.copyOf(next, size), current.version + 1);
+            snapshot = updated;
+            notifyListeners(Arrays.asList(next).subList(kept, size), removed);
+            return updated;
+        }
+    }
+
+    // Replaces the whole roster, e.g. with the result of a full HR sync.
+    public Snapshot replaceAll(Collection<? extends Professor> professors) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Snapshot updated = new Snapshot(professors.toArray(EMPTY), current.version + 1);
+            snapshot = updated;
+            if (!listeners.isEmpty()) {
+                Set<Professor> before = new HashSet<>(current);
+                Set<Professor> after = new LinkedHashSet<>(updated);
+                List<Professor> removed = new ArrayList<>();
+                for (Professor professor : current) {
+                    if (!after.contains(professor)) {
+                        removed.add(professor);
+                    }
+                }
+                after.removeAll(before);
+                notifyListeners(after, removed);
+            }
+            return updated;
+        }
+    }
+
+    // Under writeLock.
+    private void notifyListeners(Collection<Professor> added, Collection<Professor> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Collection<Professor> addedView = Collections.unmodifiableCollection(added);
+        Collection<Professor> removedView = Collections.unmodifiableCollection(removed);
+        for (Listener listener : listeners) {
+            listener.rosterChanged(addedView, removedView);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Mixed read/write load on a department roster: ProfessorRoster (copy-on-write snapshots)
+against Collections.synchronizedList.
+
+Reader threads look professors up by name, i.e. scan the roster; with the synchronized list
+they must hold its lock for the whole scan. One writer applies an HR sync every millisecond
+(removes `batch` professors and adds `batch` new ones) - with the synchronized list inside
+one synchronized block, so readers never see half a sync either.
+
+Reports lookups per second, lookup latency (every 16th lookup is timed) and syncs applied.
+
+    java ProfessorRosterBenchmark [readers] [seconds] [professors] [batch]
+*/
+class ProfessorRosterBenchmark {
+
+    interface Roster {
+        boolean containsName(String name);
+        void sync(List<Professor> remove, List<Professor> add);
+    }
+
+    static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 3;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        int batch = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+        System.out.printf(Locale.ROOT, "%d readers, %,d professors, syncs of -%d/+%d every ms%n", readers, size, batch, batch);
+
+        for (int round = 0; round < 2; round++) { // round 0 is warm-up
+            boolean report = round == 1;
+            double length = report ? seconds : 1;
+            List<Professor> initial = professors(size, 0);
+            run("Collections.synchronizedList", report, readers, length, batch, initial, synchronizedList(initial));
+            run("ProfessorRoster", report, readers, length, batch, initial, roster(initial));
+        }
+    }
+
+    static void run(String name, boolean report, int readers, double seconds, int batch, List<Professor> initial,
+                    Roster roster) throws InterruptedException {
+        int size = initial.size();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(readers + 1);
+        long[] lookups = new long[readers];
+        long[][] samples = new long[readers][];
+        int[] sampleCounts = new int[readers];
+        long[] syncs = new long[1];
+
+        for (int r = 0; r < readers; r++) {
+            int id = r;
+            new Thread(() -> {
+                long[] timings = new long[1 << 20];
+                int timed = 0;
+                long count = 0;
+                long found = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    String wanted = "Dr. " + random.nextInt(size * 2);
+                    if ((count & 15) == 0 && timed < timings.length) {
+                        long begin = System.nanoTime();
+                        found += roster.containsName(wanted) ? 1 : 0;
+                        timings[timed++] = System.nanoTime() - begin;
+                    } else {
+                        found += roster.containsName(wanted) ? 1 : 0;
+                    }
+                    count++;
+                }
+                sink += found;
+                lookups[id] = count;
+                samples[id] = timings;
+                sampleCounts[id] = timed;
+                done.countDown();
+            }).start();
+        }
+
+        new Thread(() -> {
+            List<Professor> present = new ArrayList<>(initial); // the writer's own view of who is in the roster
+            Random random = new Random(3);
+            int nextId = size;
+            while (running.get()) {
+                List<Professor> remove = new ArrayList<>(batch);
+                for (int i = 0; i < batch && !present.isEmpty(); i++) {
+                    int at = random.nextInt(present.size());
+                    remove.add(present.get(at));
+                    present.set(at, present.get(present.size() - 1));
+                    present.remove(present.size() - 1);
+                }
+                List<Professor> add = professors(batch, nextId);
+                nextId += batch;
+                present.addAll(add);
+                roster.sync(remove, add);
+                syncs[0]++;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            done.countDown();
+        }).start();
+
+        LockSupport.parkNanos((long) (seconds * 1e9));
+        running.set(false);
+        done.await();
+
+        if (report) {
+            long total = Arrays.stream(lookups).sum();
+            int timedTotal = Arrays.stream(sampleCounts).sum();
+            long[] all = new long[timedTotal];
+            int at = 0;
+            for (int r = 0; r < readers; r++) {
+                System.arraycopy(samples[r], 0, all, at, sampleCounts[r]);
+                at += sampleCounts[r];
+            }
+            Arrays.sort(all);
+            System.out.printf(Locale.ROOT, "%-30s %,12.0f lookups/sec  p50 %,7.1f us  p99 %,8.1f us  max %,8.1f us  %,6d syncs%n",
+                    name, total / seconds, all[all.length / 2] / 1e3, all[(int) (all.length * 0.99)] / 1e3,
+                    all[all.length - 1] / 1e3, syncs[0]);
+        }
+    }
+
+    static List<Professor> professors(int count, int firstId) {
+        List<Professor> professors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            professors.add(new Professor("Dr. " + (firstId + i)));
+        }
+        return professors;
+    }
+
+    static Roster synchronizedList(List<Professor> initial) {
+        List<Professor> list = Collections.synchronizedList(new ArrayList<>(initial));
+        return new Roster() {
+            public boolean containsName(String name) {
+                synchronized (list) { // required for iterating a synchronizedList
+                    for (Professor professor : list) {
+                        if (professor.getName().equals(name)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            }
+
+            public void sync(List<Professor> remove, List<Professor> add) {
+                Set<Professor> removals = new HashSet<>(remove);
+                synchronized (list) {
+                    list.removeIf(removals::contains);
+                    list.addAll(add);
+                }
+            }
+        };
+    }
+
+    static Roster roster(List<Professor> initial) {
+        Department department = Department.concurrent("Computer Science", initial);
+        return new Roster() {
+            public boolean containsName(String name) {
+                for (Professor professor : department.getProfessors()) {
+                    if (professor.getName().equals(name)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            public void sync(List<Professor> remove, List<Professor> add) {
+                department.updateProfessors(batch -> {
+                    remove.forEach(batch::remove);
+                    batch.addAll(add);
+                });
+            }
+        };
+    }
+}